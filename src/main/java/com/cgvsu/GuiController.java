@@ -4,17 +4,19 @@ import javafx.fxml.FXML;
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.control.Alert;
 import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.layout.AnchorPane;
 import javafx.stage.Stage;
 import javafx.stage.FileChooser;
 import javafx.util.Duration;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.io.IOException;
 import java.io.File;
@@ -24,16 +26,29 @@ import javafx.scene.input.MouseEvent;
 import javafx.scene.input.ScrollEvent;
 
 import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.GeometryStorage;
 import com.cgvsu.model.Model;
+import com.cgvsu.objreader.ObjDiagnostics;
+import com.cgvsu.objreader.ObjParsePolicy;
+import com.cgvsu.objreader.ObjReadProgress;
+import com.cgvsu.objreader.ObjReadResult;
 import com.cgvsu.objreader.ObjReader;
 import com.cgvsu.objreader.ObjReaderException;
 import com.cgvsu.render_engine.Camera;
+import com.cgvsu.render_engine.FrameChangeTracker;
+import com.cgvsu.render_engine.FrameRequest;
 import com.cgvsu.render_engine.RenderEngine;
+import com.cgvsu.render_engine.RenderSettings;
+import com.cgvsu.render_engine.RenderTarget;
+import com.cgvsu.render_engine.RenderThread;
 
 public class GuiController {
     final private float TRANSLATION = 0.1F;
     final private float ROTATION_SPEED = 0.01F;
     final private float ZOOM_SPEED = 0.1F;
+    // Двоичный кэш разобранных моделей - в домашнем каталоге, чтобы не мусорить рядом с файлами
+    private static final Path MESH_CACHE_DIRECTORY =
+            Path.of(System.getProperty("user.home"), ".simple3dviewer", "mesh-cache");
 
     @FXML
     AnchorPane anchorPane;
@@ -48,12 +63,27 @@ public class GuiController {
     private CheckMenuItem lightingCheck;
     @FXML
     private MenuItem toggleThemeItem;
+    @FXML
+    private MenuItem cancelLoadItem;
+    @FXML
+    private ProgressBar loadProgressBar;
+    @FXML
+    private CheckMenuItem strictParsingCheck;
+    @FXML
+    private CheckMenuItem offHeapGeometryCheck;
 
     private Model mesh = null;
+    // Незавершённая фоновая загрузка модели; null, если ничего не грузится
+    private ModelLoadTask loadTask;
+    private final RenderThread renderThread = new RenderThread();
+    private final FrameChangeTracker frameChangeTracker = new FrameChangeTracker();
     private WritableImage texture = new WritableImage(1, 1);
     private boolean useTexture = false;
     private boolean useLighting = true;
     private boolean drawWireframe = true;
+    private RenderSettings renderSettings = RenderSettings.DEFAULT;
+    // Ошибка отрисовки уже показана; сбрасывается, когда кадр снова посчитался
+    private boolean renderErrorShown = false;
     private boolean isDarkTheme = false;
 
     private Camera camera = new Camera(
@@ -90,24 +120,39 @@ public class GuiController {
         timeline = new Timeline();
         timeline.setCycleCount(Animation.INDEFINITE);
 
+        // Кадры считаются в отдельном потоке; здесь только отправка состояния и вывод готового кадра
+        renderThread.start();
+
         KeyFrame frame = new KeyFrame(Duration.millis(15), event -> {
             double width = canvas.getWidth();
             double height = canvas.getHeight();
 
-            canvas.getGraphicsContext2D().clearRect(0, 0, width, height);
             camera.setAspectRatio((float) (width / height));
 
-            if (mesh != null) {
-                RenderEngine.render(
-                        canvas.getGraphicsContext2D(),
-                        camera,
-                        mesh,
-                        (int) width,
-                        (int) height,
-                        texture,
-                        useTexture,
-                        useLighting
-                );
+            // Кадр не посчитался: на канвасе остаётся прошлый кадр. Тот же снимок заново
+            // не отправляется - следующая попытка будет, когда изменится состояние
+            RuntimeException renderFailure = renderThread.pollFailure();
+            if (renderFailure != null) {
+                reportRenderError(renderFailure);
+            }
+
+            // Что-то изменилось - отправляем снимок состояния в поток отрисовки
+            if (frameChangeTracker.update(camera, mesh, texture, (int) width, (int) height,
+                    drawWireframe, useTexture, useLighting, renderSettings)) {
+                if (mesh != null && (int) width > 0 && (int) height > 0) {
+                    renderThread.submit(new FrameRequest(camera, mesh, texture,
+                            (int) width, (int) height, drawWireframe, useTexture, useLighting, renderSettings));
+                } else {
+                    canvas.getGraphicsContext2D().clearRect(0, 0, width, height);
+                }
+            }
+
+            // Ничего нового не готово - на канвасе остаётся прошлый кадр
+            RenderTarget readyFrame = renderThread.pollFrame();
+            if (readyFrame != null) {
+                RenderEngine.present(canvas.getGraphicsContext2D(), readyFrame);
+                renderThread.releaseFrame(readyFrame);
+                renderErrorShown = false;
             }
         });
 
@@ -137,6 +182,8 @@ public class GuiController {
     }
 
     // ========== ЗАГРУЗКА МОДЕЛИ ==========
+    // Файл читается в фоновом потоке: окно и отрисовка текущей модели не останавливаются,
+    // новая модель подменяет старую целиком только после успешной загрузки
     @FXML
     private void onOpenModelMenuItemClick() {
         FileChooser fileChooser = new FileChooser();
@@ -150,25 +197,141 @@ public class GuiController {
 
         Path fileName = Path.of(file.getAbsolutePath());
 
-        try {
-            String fileContent = Files.readString(fileName);
-            mesh = ObjReader.read(fileContent);
+        // Новая загрузка заменяет незаконченную
+        cancelLoading();
+
+        // Строгий режим: любая испорченная грань - ошибка разбора, иначе такие грани пропускаются
+        ObjParsePolicy policy = strictParsingCheck.isSelected() ? ObjParsePolicy.STRICT : ObjParsePolicy.LENIENT;
+        // Геометрия вне кучи - для моделей, которые не помещаются в кучу JVM
+        GeometryStorage storage = offHeapGeometryCheck.isSelected() ? GeometryStorage.OFF_HEAP : GeometryStorage.HEAP;
+        ModelLoadTask task = new ModelLoadTask(fileName, policy, storage);
+        task.setOnSucceeded(event -> {
+            if (loadTask != task) {
+                return;
+            }
+            finishLoading();
+            mesh = task.getValue().getModel();
             System.out.println("Model loaded successfully: " +
-                    mesh.getVertices().size() + " vertices, " +
-                    mesh.getPolygons().size() + " polygons");
-        } catch (IOException exception) {
+                    mesh.getVertexCount() + " vertices, " +
+                    mesh.getPolygonCount() + " polygons");
+
+            ObjDiagnostics diagnostics = task.getValue().getDiagnostics();
+            if (!diagnostics.isEmpty()) {
+                System.err.println("Warning: " + diagnostics.getReport());
+                showDiagnosticsDialog(diagnostics);
+            }
+        });
+        task.setOnFailed(event -> {
+            if (loadTask != task) {
+                return;
+            }
+            finishLoading();
+            reportLoadError(task.getException());
+        });
+        task.setOnCancelled(event -> {
+            if (loadTask == task) {
+                finishLoading();
+            }
+        });
+
+        loadTask = task;
+        loadProgressBar.progressProperty().bind(task.progressProperty());
+        loadProgressBar.setVisible(true);
+        cancelLoadItem.setDisable(false);
+
+        Thread loader = new Thread(task, "model-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @FXML
+    private void onCancelLoadMenuItemClick() {
+        cancelLoading();
+    }
+
+    private void cancelLoading() {
+        if (loadTask != null) {
+            // Без прерывания потока: прерывание закрыло бы канал файла посреди чтения,
+            // а разбор и сам проверяет отмену через ObjReadProgress.isCancelled
+            loadTask.cancel(false);
+            finishLoading();
+        }
+    }
+
+    private void finishLoading() {
+        loadTask = null;
+        loadProgressBar.progressProperty().unbind();
+        loadProgressBar.setVisible(false);
+        cancelLoadItem.setDisable(true);
+    }
+
+    private void reportLoadError(Throwable exception) {
+        if (exception instanceof IOException) {
             System.err.println("Error reading file: " + exception.getMessage());
             showErrorDialog("File Error", "Cannot read file: " + exception.getMessage());
-        } catch (ObjReaderException exception) {
+        } else if (exception instanceof ObjReaderException) {
             System.err.println("Error parsing OBJ: " + exception.getMessage());
             showErrorDialog("Parse Error", "Cannot parse OBJ file: " + exception.getMessage());
-        } catch (Exception exception) {
+        } else {
             System.err.println("Unexpected error: " + exception.getMessage());
             exception.printStackTrace();
             showErrorDialog("Error", "Unexpected error: " + exception.getMessage());
         }
     }
 
+    // Диалог показывается один раз на серию ошибок. Во время обработки анимации
+    // showAndWait запрещён, поэтому диалог откладывается через runLater
+    private void reportRenderError(RuntimeException exception) {
+        System.err.println("Render error: " + exception.getMessage());
+        if (renderErrorShown) {
+            return;
+        }
+        renderErrorShown = true;
+        exception.printStackTrace();
+        Platform.runLater(() -> showErrorDialog("Render Error", "Cannot render frame: " + exception.getMessage()));
+    }
+
+    // Модель загружена, но часть граней пропущена - сводка и первые примеры с номерами строк
+    private void showDiagnosticsDialog(ObjDiagnostics diagnostics) {
+        StringBuilder examples = new StringBuilder();
+        for (ObjDiagnostics.Example example : diagnostics.getExamples()) {
+            examples.append(example).append('\n');
+        }
+
+        Alert alert = new Alert(Alert.AlertType.WARNING);
+        alert.setTitle("Model Loaded With Issues");
+        alert.setHeaderText(diagnostics.getSummary());
+        alert.setContentText(examples.toString());
+        alert.show();
+    }
+
+    // Прогресс - доля разобранных байтов файла; isCancelled() задачи служит сигналом отмены для разбора
+    private static final class ModelLoadTask extends Task<ObjReadResult> implements ObjReadProgress {
+        private final Path path;
+        private final ObjParsePolicy policy;
+        private final GeometryStorage storage;
+
+        ModelLoadTask(Path path, ObjParsePolicy policy, GeometryStorage storage) {
+            this.path = path;
+            this.policy = policy;
+            this.storage = storage;
+        }
+
+        @Override
+        protected ObjReadResult call() throws IOException {
+            return ObjReader.loadCached(path, MESH_CACHE_DIRECTORY, policy, this, storage);
+        }
+
+        @Override
+        public void update(long parsedBytes, long totalBytes) {
+            updateProgress(parsedBytes, totalBytes);
+        }
+    }
+
+    public long getReusedFrameCount() {
+        return frameChangeTracker.getReusedFrameCount();
+    }
+
     private void showErrorDialog(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle(title);
@@ -320,7 +483,9 @@ public class GuiController {
 
     @FXML
     public void onExitMenuItemClick() {
+        cancelLoading();
         timeline.stop();
+        renderThread.shutdown();
         Stage stage = (Stage) canvas.getScene().getWindow();
         stage.close();
     }
@@ -0,0 +1,63 @@
+package com.cgvsu.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+// Выделение и рост буферов геометрии в заданном хранилище
+final class GeometryBuffers {
+    // Прямой буфер адресуется int-смещением в байтах
+    private static final int MAX_DIRECT_ELEMENTS = Integer.MAX_VALUE / Float.BYTES;
+
+    private GeometryBuffers() {
+    }
+
+    static FloatBuffer allocateFloats(GeometryStorage storage, int capacity) {
+        if (storage == GeometryStorage.HEAP) {
+            return FloatBuffer.allocate(capacity);
+        }
+        return ByteBuffer.allocateDirect(checkDirect(capacity) * Float.BYTES)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    static IntBuffer allocateInts(GeometryStorage storage, int capacity) {
+        if (storage == GeometryStorage.HEAP) {
+            return IntBuffer.allocate(capacity);
+        }
+        return ByteBuffer.allocateDirect(checkDirect(capacity) * Integer.BYTES)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    // Буфер не меньше required элементов; первые used элементов переносятся в новый.
+    // Буфер только для чтения (например, отображённый файл) заменяется при первом же росте.
+    static FloatBuffer ensureCapacity(GeometryStorage storage, FloatBuffer buffer, int used, int required) {
+        if (required <= buffer.capacity() && !buffer.isReadOnly()) {
+            return buffer;
+        }
+        FloatBuffer grown = allocateFloats(storage, grownCapacity(storage, buffer.capacity(), required));
+        grown.put(0, buffer, 0, used);
+        return grown;
+    }
+
+    static IntBuffer ensureCapacity(GeometryStorage storage, IntBuffer buffer, int used, int required) {
+        if (required <= buffer.capacity() && !buffer.isReadOnly()) {
+            return buffer;
+        }
+        IntBuffer grown = allocateInts(storage, grownCapacity(storage, buffer.capacity(), required));
+        grown.put(0, buffer, 0, used);
+        return grown;
+    }
+
+    private static int grownCapacity(GeometryStorage storage, int capacity, int required) {
+        long limit = storage == GeometryStorage.HEAP ? Integer.MAX_VALUE - 8 : MAX_DIRECT_ELEMENTS;
+        return (int) Math.max(required, Math.min(2L * capacity, limit));
+    }
+
+    private static int checkDirect(int capacity) {
+        if (capacity > MAX_DIRECT_ELEMENTS) {
+            throw new IllegalArgumentException("Geometry stream too large for a direct buffer: " + capacity);
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,11 @@
+package com.cgvsu.model;
+
+// Где Model хранит потоки вершин и индексов (и построенные по ним триангуляцию и кластеры)
+public enum GeometryStorage {
+    // Массивы в куче Java
+    HEAP,
+    // Прямые буферы вне кучи или отображённый в память файл: сборщик мусора их не сканирует
+    // и не копирует, куча не растёт с размером модели. Прямые буферы ограничены
+    // -XX:MaxDirectMemorySize (по умолчанию равен -Xmx), отображённые файлы - нет.
+    OFF_HEAP
+}
@@ -3,52 +3,444 @@ package com.cgvsu.model;
 import com.cgvsu.math.Vector3f;
 import com.cgvsu.math.Vector2f;
 
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
 
+// Геометрия хранится в плоских растущих буферах примитивов: координаты вершин, текстурных
+// координат и нормалей подряд (x, y, z или u, v на элемент), полигоны - в формате CSR:
+// углы полигона p лежат в polygon*Indices[polygonOffsets[p] .. polygonOffsets[p + 1]).
+// Индекс текстуры или нормали угла равен -1, если у полигона их нет.
+// Буферы лежат в куче или вне её (GeometryStorage); рендерер читает их одинаково.
 public class Model {
-    private List<Vector3f> vertices = new ArrayList<>();
-    private List<Vector2f> textureVertices = new ArrayList<>();
-    private List<Vector3f> normals = new ArrayList<>();
-    private List<Polygon> polygons = new ArrayList<>();
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final GeometryStorage storage;
+
+    private FloatBuffer vertexCoordinates;
+    private int vertexCount;
+    private FloatBuffer textureCoordinates;
+    private int textureVertexCount;
+    private FloatBuffer normalCoordinates;
+    private int normalCount;
+
+    private IntBuffer polygonOffsets;
+    private int polygonCount;
+    private IntBuffer polygonVertexIndices;
+    private IntBuffer polygonTextureVertexIndices;
+    private IntBuffer polygonNormalIndices;
+    private int cornerCount;
+
+    // Кэш триангуляции, сбрасывается при изменении списка полигонов
+    private volatile TriangleIndexBuffer triangleIndexBuffer;
+    // Кэш пространственных кластеров треугольников, зависит и от полигонов, и от вершин
+    private volatile TriangleClusters triangleClusters;
+    // Кэш уникальных рёбер контуров полигонов (пары индексов вершин)
+    private volatile int[] edgeIndices;
+    // Увеличивается при любом изменении геометрии
+    private volatile long version;
+
+    public Model() {
+        this(GeometryStorage.HEAP);
+    }
+
+    public Model(GeometryStorage storage) {
+        this.storage = storage;
+        vertexCoordinates = GeometryBuffers.allocateFloats(storage, 3 * INITIAL_CAPACITY);
+        textureCoordinates = GeometryBuffers.allocateFloats(storage, 2 * INITIAL_CAPACITY);
+        normalCoordinates = GeometryBuffers.allocateFloats(storage, 3 * INITIAL_CAPACITY);
+        polygonOffsets = GeometryBuffers.allocateInts(storage, INITIAL_CAPACITY + 1);
+        polygonVertexIndices = GeometryBuffers.allocateInts(storage, 3 * INITIAL_CAPACITY);
+        polygonTextureVertexIndices = GeometryBuffers.allocateInts(storage, 3 * INITIAL_CAPACITY);
+        polygonNormalIndices = GeometryBuffers.allocateInts(storage, 3 * INITIAL_CAPACITY);
+    }
+
+    // Модель поверх готовых буферов, без копирования - например, отображённого в память файла.
+    // Буферы могут быть только для чтения: при первом изменении модели они заменяются копиями.
+    // Индексы текстур и нормалей полигона должны быть либо все неотрицательными, либо все -1.
+    public static Model wrap(GeometryStorage storage,
+                             FloatBuffer vertexCoordinates, int vertexCount,
+                             FloatBuffer textureCoordinates, int textureVertexCount,
+                             FloatBuffer normalCoordinates, int normalCount,
+                             IntBuffer polygonOffsets, IntBuffer polygonVertexIndices,
+                             IntBuffer polygonTextureVertexIndices, IntBuffer polygonNormalIndices,
+                             int polygonCount) {
+        Model model = new Model(storage);
+        model.vertexCoordinates = vertexCoordinates;
+        model.vertexCount = vertexCount;
+        model.textureCoordinates = textureCoordinates;
+        model.textureVertexCount = textureVertexCount;
+        model.normalCoordinates = normalCoordinates;
+        model.normalCount = normalCount;
+        model.polygonOffsets = polygonOffsets;
+        model.polygonVertexIndices = polygonVertexIndices;
+        model.polygonTextureVertexIndices = polygonTextureVertexIndices;
+        model.polygonNormalIndices = polygonNormalIndices;
+        model.polygonCount = polygonCount;
+        model.cornerCount = polygonOffsets.get(polygonCount);
+        return model;
+    }
+
+    public GeometryStorage getStorage() {
+        return storage;
+    }
 
     public void addVertex(Vector3f vertex) {
-        vertices.add(vertex);
+        vertexCoordinates = GeometryBuffers.ensureCapacity(storage, vertexCoordinates,
+                vertexCount * 3, (vertexCount + 1) * 3);
+        vertexCoordinates.put(vertexCount * 3, vertex.x);
+        vertexCoordinates.put(vertexCount * 3 + 1, vertex.y);
+        vertexCoordinates.put(vertexCount * 3 + 2, vertex.z);
+        vertexCount++;
+        triangleClusters = null;
+        version++;
     }
 
     public void addTextureVertex(Vector2f textureVertex) {
-        textureVertices.add(textureVertex);
+        textureCoordinates = GeometryBuffers.ensureCapacity(storage, textureCoordinates,
+                textureVertexCount * 2, (textureVertexCount + 1) * 2);
+        textureCoordinates.put(textureVertexCount * 2, textureVertex.x);
+        textureCoordinates.put(textureVertexCount * 2 + 1, textureVertex.y);
+        textureVertexCount++;
+        version++;
     }
 
     public void addNormal(Vector3f normal) {
-        normals.add(normal);
+        normalCoordinates = GeometryBuffers.ensureCapacity(storage, normalCoordinates,
+                normalCount * 3, (normalCount + 1) * 3);
+        normalCoordinates.put(normalCount * 3, normal.x);
+        normalCoordinates.put(normalCount * 3 + 1, normal.y);
+        normalCoordinates.put(normalCount * 3 + 2, normal.z);
+        normalCount++;
+        version++;
     }
 
+    // Индексы текстур и нормалей сохраняются, только если их столько же, сколько вершин
+    // (Polygon.hasTextureCoordinates / hasNormals) - триангуляция использует только такие
     public void addPolygon(Polygon polygon) {
-        polygons.add(polygon);
+        List<Integer> vertices = polygon.getVertexIndices();
+        List<Integer> textures = polygon.hasTextureCoordinates() ? polygon.getTextureVertexIndices() : null;
+        List<Integer> normals = polygon.hasNormals() ? polygon.getNormalIndices() : null;
+
+        reservePolygons(1, vertices.size());
+        for (int i = 0; i < vertices.size(); i++) {
+            polygonVertexIndices.put(cornerCount, vertices.get(i));
+            polygonTextureVertexIndices.put(cornerCount, textures != null ? textures.get(i) : -1);
+            polygonNormalIndices.put(cornerCount, normals != null ? normals.get(i) : -1);
+            cornerCount++;
+        }
+        polygonOffsets.put(++polygonCount, cornerCount);
+        invalidateTriangles();
+    }
+
+    // Массовое добавление: count вершин из coordinates[0 .. count * 3)
+    public void addVertices(float[] coordinates, int count) {
+        vertexCoordinates = GeometryBuffers.ensureCapacity(storage, vertexCoordinates,
+                vertexCount * 3, (vertexCount + count) * 3);
+        vertexCoordinates.put(vertexCount * 3, coordinates, 0, count * 3);
+        vertexCount += count;
+        triangleClusters = null;
+        version++;
+    }
+
+    public void addTextureVertices(float[] coordinates, int count) {
+        textureCoordinates = GeometryBuffers.ensureCapacity(storage, textureCoordinates,
+                textureVertexCount * 2, (textureVertexCount + count) * 2);
+        textureCoordinates.put(textureVertexCount * 2, coordinates, 0, count * 2);
+        textureVertexCount += count;
+        version++;
+    }
+
+    public void addNormals(float[] coordinates, int count) {
+        normalCoordinates = GeometryBuffers.ensureCapacity(storage, normalCoordinates,
+                normalCount * 3, (normalCount + count) * 3);
+        normalCoordinates.put(normalCount * 3, coordinates, 0, count * 3);
+        normalCount += count;
+        version++;
     }
 
+    // Массовое добавление count полигонов в формате CSR: углы полигона p -
+    // [offsets[p] .. offsets[p + 1]) во всех трёх массивах индексов.
+    // textureVertexIndices и normalIndices могут быть null. Как и в addPolygon, индексы
+    // текстур или нормалей полигона отбрасываются, если хотя бы один из них отрицательный.
+    public void addPolygons(int[] offsets, int[] vertexIndices, int[] textureVertexIndices,
+                            int[] normalIndices, int count) {
+        for (int p = 0; p < count; p++) {
+            if (offsets[p + 1] - offsets[p] < 3) {
+                throw new IllegalArgumentException("Polygon must have at least 3 vertices");
+            }
+        }
+
+        int first = offsets[0];
+        int corners = offsets[count] - first;
+        reservePolygons(count, corners);
+        polygonVertexIndices.put(cornerCount, vertexIndices, first, corners);
+        copyAttributeIndices(offsets, textureVertexIndices, polygonTextureVertexIndices, count);
+        copyAttributeIndices(offsets, normalIndices, polygonNormalIndices, count);
+        for (int p = 1; p <= count; p++) {
+            polygonOffsets.put(polygonCount + p, cornerCount + offsets[p] - first);
+        }
+        polygonCount += count;
+        cornerCount += corners;
+        invalidateTriangles();
+    }
+
+    private void copyAttributeIndices(int[] offsets, int[] source, IntBuffer target, int count) {
+        int shift = cornerCount - offsets[0];
+        for (int p = 0; p < count; p++) {
+            int from = offsets[p];
+            int to = offsets[p + 1];
+            boolean complete = source != null;
+            for (int i = from; complete && i < to; i++) {
+                complete = source[i] >= 0;
+            }
+            if (complete) {
+                target.put(from + shift, source, from, to - from);
+            } else {
+                for (int i = from; i < to; i++) {
+                    target.put(i + shift, -1);
+                }
+            }
+        }
+    }
+
+    private void reservePolygons(int polygons, int corners) {
+        polygonOffsets = GeometryBuffers.ensureCapacity(storage, polygonOffsets,
+                polygonCount + 1, polygonCount + polygons + 1);
+        int required = cornerCount + corners;
+        polygonVertexIndices = GeometryBuffers.ensureCapacity(storage, polygonVertexIndices, cornerCount, required);
+        polygonTextureVertexIndices = GeometryBuffers.ensureCapacity(storage, polygonTextureVertexIndices,
+                cornerCount, required);
+        polygonNormalIndices = GeometryBuffers.ensureCapacity(storage, polygonNormalIndices, cornerCount, required);
+    }
+
+    // Списки ниже - представления поверх массивов: элемент создаётся при каждом обращении
+    // и изменения его полей в модель не попадают. Для обхода всей геометрии быстрее
+    // массовые методы get*Coordinates / getPolygon*.
     public List<Vector3f> getVertices() {
-        return Collections.unmodifiableList(vertices);
+        return new ArrayView<>(() -> vertexCount,
+                i -> new Vector3f(vertexCoordinates.get(i * 3), vertexCoordinates.get(i * 3 + 1),
+                        vertexCoordinates.get(i * 3 + 2)));
     }
 
     public List<Vector2f> getTextureVertices() {
-        return Collections.unmodifiableList(textureVertices);
+        return new ArrayView<>(() -> textureVertexCount,
+                i -> new Vector2f(textureCoordinates.get(i * 2), textureCoordinates.get(i * 2 + 1)));
     }
 
     public List<Vector3f> getNormals() {
-        return Collections.unmodifiableList(normals);
+        return new ArrayView<>(() -> normalCount,
+                i -> new Vector3f(normalCoordinates.get(i * 3), normalCoordinates.get(i * 3 + 1),
+                        normalCoordinates.get(i * 3 + 2)));
     }
 
     public List<Polygon> getPolygons() {
-        return Collections.unmodifiableList(polygons);
+        return new ArrayView<>(() -> polygonCount, this::createPolygon);
+    }
+
+    private Polygon createPolygon(int p) {
+        int from = polygonOffsets.get(p);
+        int to = polygonOffsets.get(p + 1);
+        Polygon polygon = new Polygon();
+        polygon.setVertexIndices(slice(polygonVertexIndices, from, to));
+        polygon.setTextureVertexIndices(slice(polygonTextureVertexIndices, from, to));
+        polygon.setNormalIndices(slice(polygonNormalIndices, from, to));
+        return polygon;
+    }
+
+    private static List<Integer> slice(IntBuffer values, int from, int to) {
+        List<Integer> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            result.add(values.get(i));
+        }
+        return result;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getTextureVertexCount() {
+        return textureVertexCount;
+    }
+
+    public int getNormalCount() {
+        return normalCount;
+    }
+
+    public int getPolygonCount() {
+        return polygonCount;
+    }
+
+    // Буферы отдаются без копирования, как представления только для чтения с абсолютной
+    // адресацией (get(index)). Они могут быть длиннее данных (запас роста) и заменяются
+    // новыми при добавлении элементов.
+    public FloatBuffer getVertexCoordinates() {
+        return vertexCoordinates.asReadOnlyBuffer();
+    }
+
+    public FloatBuffer getTextureCoordinates() {
+        return textureCoordinates.asReadOnlyBuffer();
+    }
+
+    public FloatBuffer getNormalCoordinates() {
+        return normalCoordinates.asReadOnlyBuffer();
+    }
+
+    // polygonCount + 1 смещений
+    public IntBuffer getPolygonOffsets() {
+        return polygonOffsets.asReadOnlyBuffer();
+    }
+
+    public IntBuffer getPolygonVertexIndices() {
+        return polygonVertexIndices.asReadOnlyBuffer();
+    }
+
+    public IntBuffer getPolygonTextureVertexIndices() {
+        return polygonTextureVertexIndices.asReadOnlyBuffer();
+    }
+
+    public IntBuffer getPolygonNormalIndices() {
+        return polygonNormalIndices.asReadOnlyBuffer();
+    }
+
+    // Триангуляция строится один раз и переиспользуется, пока полигоны не изменятся
+    public TriangleIndexBuffer getTriangles() {
+        TriangleIndexBuffer buffer = triangleIndexBuffer;
+        if (buffer == null) {
+            synchronized (this) {
+                buffer = triangleIndexBuffer;
+                if (buffer == null) {
+                    buffer = TriangleIndexBuffer.build(storage, polygonOffsets, polygonVertexIndices,
+                            polygonTextureVertexIndices, polygonNormalIndices, polygonCount);
+                    triangleIndexBuffer = buffer;
+                }
+            }
+        }
+        return buffer;
+    }
+
+    // Кластеры строятся по кэшированной триангуляции; сбрасываются вместе с ней
+    // и при добавлении вершин
+    public TriangleClusters getClusters() {
+        TriangleClusters clusters = triangleClusters;
+        if (clusters == null) {
+            synchronized (this) {
+                clusters = triangleClusters;
+                if (clusters == null) {
+                    clusters = TriangleClusters.build(storage, getTriangles(), vertexCoordinates);
+                    triangleClusters = clusters;
+                }
+            }
+        }
+        return clusters;
+    }
+
+    // Уникальные рёбра исходных полигонов (без диагоналей триангуляции): по два индекса на ребро.
+    // Общее ребро соседних полигонов входит один раз.
+    public int[] getEdges() {
+        int[] edges = edgeIndices;
+        if (edges == null) {
+            synchronized (this) {
+                edges = edgeIndices;
+                if (edges == null) {
+                    edges = buildEdges(polygonOffsets, polygonVertexIndices, polygonCount);
+                    edgeIndices = edges;
+                }
+            }
+        }
+        return edges;
+    }
+
+    private static int[] buildEdges(IntBuffer offsets, IntBuffer indices, int polygonCount) {
+        int edgeCount = offsets.get(polygonCount);
+
+        // Ребро кодируется как (меньший индекс << 32) | больший; сортировка убирает дубликаты
+        long[] keys = new long[edgeCount];
+        int offset = 0;
+        for (int p = 0; p < polygonCount; p++) {
+            int from = offsets.get(p);
+            int to = offsets.get(p + 1);
+            for (int i = from; i < to; i++) {
+                int a = indices.get(i);
+                int b = indices.get(i + 1 < to ? i + 1 : from);
+                keys[offset++] = ((long) Math.min(a, b) << 32) | (Math.max(a, b) & 0xFFFFFFFFL);
+            }
+        }
+        Arrays.sort(keys);
+
+        int[] edges = new int[edgeCount * 2];
+        int unique = 0;
+        for (int i = 0; i < edgeCount; i++) {
+            if (i > 0 && keys[i] == keys[i - 1]) {
+                continue;
+            }
+            edges[unique * 2] = (int) (keys[i] >> 32);
+            edges[unique * 2 + 1] = (int) keys[i];
+            unique++;
+        }
+        return Arrays.copyOf(edges, unique * 2);
+    }
+
+    public void invalidateTriangles() {
+        triangleIndexBuffer = null;
+        triangleClusters = null;
+        edgeIndices = null;
+        version++;
+    }
+
+    public long getVersion() {
+        return version;
     }
 
     public void clear() {
-        vertices.clear();
-        textureVertices.clear();
-        normals.clear();
-        polygons.clear();
+        // Старые буферы могли уйти в триангуляцию без копирования - пишем в новые
+        vertexCoordinates = GeometryBuffers.allocateFloats(storage, 3 * INITIAL_CAPACITY);
+        textureCoordinates = GeometryBuffers.allocateFloats(storage, 2 * INITIAL_CAPACITY);
+        normalCoordinates = GeometryBuffers.allocateFloats(storage, 3 * INITIAL_CAPACITY);
+        polygonOffsets = GeometryBuffers.allocateInts(storage, INITIAL_CAPACITY + 1);
+        polygonVertexIndices = GeometryBuffers.allocateInts(storage, 3 * INITIAL_CAPACITY);
+        polygonTextureVertexIndices = GeometryBuffers.allocateInts(storage, 3 * INITIAL_CAPACITY);
+        polygonNormalIndices = GeometryBuffers.allocateInts(storage, 3 * INITIAL_CAPACITY);
+        vertexCount = 0;
+        textureVertexCount = 0;
+        normalCount = 0;
+        polygonCount = 0;
+        cornerCount = 0;
+        triangleIndexBuffer = null;
+        triangleClusters = null;
+        edgeIndices = null;
+        version++;
+    }
+
+    // Неизменяемый список с произвольным доступом: размер и элементы читаются из модели
+    // при каждом обращении
+    private static final class ArrayView<T> extends AbstractList<T> implements RandomAccess {
+        private final IntSupplier size;
+        private final IntFunction<T> element;
+
+        ArrayView(IntSupplier size, IntFunction<T> element) {
+            this.size = size;
+            this.element = element;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size.getAsInt()) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size.getAsInt());
+            }
+            return element.apply(index);
+        }
+
+        @Override
+        public int size() {
+            return size.getAsInt();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,394 @@
+package com.cgvsu.model;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+// Разбиение триангулированной модели на пространственно связные кластеры.
+// Треугольники упорядочиваются по коду Мортона центроида и режутся на группы
+// до MAX_CLUSTER_SIZE штук; у каждого кластера есть ограничивающая сфера.
+// Над кластерами строится иерархия: соседние по коду Мортона узлы объединяются
+// по NODE_FAN_OUT, у каждого узла - AABB и конус нормалей его треугольников.
+public final class TriangleClusters {
+    public static final int MAX_CLUSTER_SIZE = 256;
+    public static final int NODE_FAN_OUT = 8;
+    // Значение синуса раствора конуса, при котором конус не годится для отбраковки
+    public static final float NO_CONE = 1.0f;
+    // Бит на ось в коде Мортона
+    private static final int MORTON_BITS = 10;
+
+    private final int clusterCount;
+    // Номера треугольников, сгруппированные по кластерам. Этот буфер и clusterVertices растут
+    // с размером модели и лежат в её хранилище (GeometryStorage); данные кластеров и узлов -
+    // по одному элементу на кластер из MAX_CLUSTER_SIZE треугольников - всегда в куче.
+    private final IntBuffer triangleOrder;
+    // Кластер c - это triangleOrder[clusterOffsets[c] .. clusterOffsets[c + 1])
+    private final int[] clusterOffsets;
+    // Центры сфер: по 3 значения на кластер
+    private final float[] centers;
+    private final float[] radii;
+    // Уникальные вершины кластера c - clusterVertices[clusterVertexOffsets[c] .. clusterVertexOffsets[c + 1])
+    private final int[] clusterVertexOffsets;
+    private final IntBuffer clusterVertices;
+
+    // Узлы иерархии: первые clusterCount - листья (номер узла = номер кластера), последний - корень.
+    // Дети узла - узлы nodeFirstChild[n] .. nodeFirstChild[n] + nodeChildCount[n] - 1
+    private final int nodeCount;
+    private final int[] nodeFirstChild;
+    private final int[] nodeChildCount;
+    // AABB: minX, minY, minZ, maxX, maxY, maxZ на узел
+    private final float[] nodeBounds;
+    // Конус нормалей: ось (x, y, z) и синус половины раствора; NO_CONE - конус слишком широкий
+    private final float[] nodeCones;
+
+    private TriangleClusters(int clusterCount, IntBuffer triangleOrder, int[] clusterOffsets,
+                             float[] centers, float[] radii,
+                             int[] clusterVertexOffsets, IntBuffer clusterVertices,
+                             int nodeCount, int[] nodeFirstChild, int[] nodeChildCount,
+                             float[] nodeBounds, float[] nodeCones) {
+        this.clusterCount = clusterCount;
+        this.triangleOrder = triangleOrder;
+        this.clusterOffsets = clusterOffsets;
+        this.centers = centers;
+        this.radii = radii;
+        this.clusterVertexOffsets = clusterVertexOffsets;
+        this.clusterVertices = clusterVertices;
+        this.nodeCount = nodeCount;
+        this.nodeFirstChild = nodeFirstChild;
+        this.nodeChildCount = nodeChildCount;
+        this.nodeBounds = nodeBounds;
+        this.nodeCones = nodeCones;
+    }
+
+    // vertices - координаты вершин подряд, по 3 на вершину (Model.getVertexCoordinates)
+    static TriangleClusters build(GeometryStorage storage, TriangleIndexBuffer triangles, FloatBuffer vertices) {
+        int triangleCount = triangles.getTriangleCount();
+        IntBuffer indices = triangles.getVertexIndices();
+
+        // Центроиды и их общий bounding box
+        float[] centroids = new float[triangleCount * 3];
+        float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+        float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        for (int t = 0; t < triangleCount; t++) {
+            int v0 = indices.get(t * 3) * 3;
+            int v1 = indices.get(t * 3 + 1) * 3;
+            int v2 = indices.get(t * 3 + 2) * 3;
+            centroids[t * 3] = (vertices.get(v0) + vertices.get(v1) + vertices.get(v2)) / 3.0f;
+            centroids[t * 3 + 1] = (vertices.get(v0 + 1) + vertices.get(v1 + 1) + vertices.get(v2 + 1)) / 3.0f;
+            centroids[t * 3 + 2] = (vertices.get(v0 + 2) + vertices.get(v1 + 2) + vertices.get(v2 + 2)) / 3.0f;
+            for (int axis = 0; axis < 3; axis++) {
+                min[axis] = Math.min(min[axis], centroids[t * 3 + axis]);
+                max[axis] = Math.max(max[axis], centroids[t * 3 + axis]);
+            }
+        }
+
+        // Ключ сортировки: код Мортона в старших битах, номер треугольника в младших
+        long[] keys = new long[triangleCount];
+        float cells = (1 << MORTON_BITS) - 1;
+        for (int t = 0; t < triangleCount; t++) {
+            int[] cell = new int[3];
+            for (int axis = 0; axis < 3; axis++) {
+                float extent = max[axis] - min[axis];
+                cell[axis] = extent > 0 ? (int) ((centroids[t * 3 + axis] - min[axis]) / extent * cells) : 0;
+            }
+            keys[t] = (mortonCode(cell[0], cell[1], cell[2]) << 32) | t;
+        }
+        Arrays.sort(keys);
+
+        int[] triangleOrder = new int[triangleCount];
+        for (int i = 0; i < triangleCount; i++) {
+            triangleOrder[i] = (int) keys[i];
+        }
+
+        int clusterCount = (triangleCount + MAX_CLUSTER_SIZE - 1) / MAX_CLUSTER_SIZE;
+        int[] clusterOffsets = new int[clusterCount + 1];
+        float[] centers = new float[clusterCount * 3];
+        float[] radii = new float[clusterCount];
+        for (int c = 0; c < clusterCount; c++) {
+            int from = c * MAX_CLUSTER_SIZE;
+            int to = Math.min(triangleCount, from + MAX_CLUSTER_SIZE);
+            clusterOffsets[c + 1] = to;
+            computeSphere(triangleOrder, from, to, indices, vertices, centers, radii, c);
+        }
+
+        // Вершины каждого кластера без повторов - чтобы преобразовывать только видимые
+        int[] clusterVertexOffsets = new int[clusterCount + 1];
+        int[][] perCluster = new int[clusterCount][];
+        for (int c = 0; c < clusterCount; c++) {
+            int from = clusterOffsets[c];
+            int to = clusterOffsets[c + 1];
+            int[] list = new int[(to - from) * 3];
+            for (int i = from; i < to; i++) {
+                for (int k = 0; k < 3; k++) {
+                    list[(i - from) * 3 + k] = indices.get(triangleOrder[i] * 3 + k);
+                }
+            }
+            Arrays.sort(list);
+            int unique = 0;
+            for (int i = 0; i < list.length; i++) {
+                if (i == 0 || list[i] != list[i - 1]) {
+                    list[unique++] = list[i];
+                }
+            }
+            perCluster[c] = Arrays.copyOf(list, unique);
+            clusterVertexOffsets[c + 1] = clusterVertexOffsets[c] + unique;
+        }
+        IntBuffer clusterVertices = GeometryBuffers.allocateInts(storage, clusterVertexOffsets[clusterCount]);
+        for (int c = 0; c < clusterCount; c++) {
+            clusterVertices.put(clusterVertexOffsets[c], perCluster[c]);
+        }
+
+        // Число узлов: листья плюс все уровни объединения до единственного корня
+        int nodeCount = clusterCount;
+        for (int level = clusterCount; level > 1; level = (level + NODE_FAN_OUT - 1) / NODE_FAN_OUT) {
+            nodeCount += (level + NODE_FAN_OUT - 1) / NODE_FAN_OUT;
+        }
+        int[] nodeFirstChild = new int[nodeCount];
+        int[] nodeChildCount = new int[nodeCount];
+        float[] nodeBounds = new float[nodeCount * 6];
+        float[] nodeCones = new float[nodeCount * 4];
+
+        for (int c = 0; c < clusterCount; c++) {
+            computeLeaf(triangleOrder, clusterOffsets[c], clusterOffsets[c + 1], indices, vertices,
+                    nodeBounds, nodeCones, c);
+        }
+
+        int levelStart = 0;
+        int levelSize = clusterCount;
+        int next = clusterCount;
+        while (levelSize > 1) {
+            int parentStart = next;
+            for (int child = 0; child < levelSize; child += NODE_FAN_OUT) {
+                int node = next++;
+                nodeFirstChild[node] = levelStart + child;
+                nodeChildCount[node] = Math.min(NODE_FAN_OUT, levelSize - child);
+                mergeChildren(node, nodeFirstChild[node], nodeChildCount[node], nodeBounds, nodeCones);
+            }
+            levelStart = parentStart;
+            levelSize = next - parentStart;
+        }
+
+        IntBuffer storedOrder = GeometryBuffers.allocateInts(storage, triangleCount);
+        storedOrder.put(0, triangleOrder);
+        return new TriangleClusters(clusterCount, storedOrder.asReadOnlyBuffer(), clusterOffsets, centers, radii,
+                clusterVertexOffsets, clusterVertices.asReadOnlyBuffer(),
+                nodeCount, nodeFirstChild, nodeChildCount, nodeBounds, nodeCones);
+    }
+
+    // AABB и конус нормалей листа. Ориентация нормали - (v1 - v0) x (v2 - v0),
+    // как в GraphicConveyor.isBackFacing
+    private static void computeLeaf(int[] triangleOrder, int from, int to, IntBuffer indices,
+                                    FloatBuffer vertices, float[] nodeBounds, float[] nodeCones, int node) {
+        float[] bounds = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE,
+                -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        float[] normals = new float[(to - from) * 3];
+        int normalCount = 0;
+        float axisX = 0, axisY = 0, axisZ = 0;
+
+        for (int i = from; i < to; i++) {
+            int t = triangleOrder[i];
+            int v0 = indices.get(t * 3) * 3;
+            int v1 = indices.get(t * 3 + 1) * 3;
+            int v2 = indices.get(t * 3 + 2) * 3;
+            for (int v : new int[]{v0, v1, v2}) {
+                bounds[0] = Math.min(bounds[0], vertices.get(v));
+                bounds[1] = Math.min(bounds[1], vertices.get(v + 1));
+                bounds[2] = Math.min(bounds[2], vertices.get(v + 2));
+                bounds[3] = Math.max(bounds[3], vertices.get(v));
+                bounds[4] = Math.max(bounds[4], vertices.get(v + 1));
+                bounds[5] = Math.max(bounds[5], vertices.get(v + 2));
+            }
+
+            float x0 = vertices.get(v0), y0 = vertices.get(v0 + 1), z0 = vertices.get(v0 + 2);
+            float ex = vertices.get(v1) - x0, ey = vertices.get(v1 + 1) - y0, ez = vertices.get(v1 + 2) - z0;
+            float fx = vertices.get(v2) - x0, fy = vertices.get(v2 + 1) - y0, fz = vertices.get(v2 + 2) - z0;
+            float nx = ey * fz - ez * fy;
+            float ny = ez * fx - ex * fz;
+            float nz = ex * fy - ey * fx;
+            float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length == 0) {
+                // Вырожденный треугольник не рисуется и на конус не влияет
+                continue;
+            }
+            normals[normalCount * 3] = nx / length;
+            normals[normalCount * 3 + 1] = ny / length;
+            normals[normalCount * 3 + 2] = nz / length;
+            axisX += nx / length;
+            axisY += ny / length;
+            axisZ += nz / length;
+            normalCount++;
+        }
+
+        System.arraycopy(bounds, 0, nodeBounds, node * 6, 6);
+
+        float axisLength = (float) Math.sqrt(axisX * axisX + axisY * axisY + axisZ * axisZ);
+        if (normalCount == 0 || axisLength == 0) {
+            setCone(nodeCones, node, 0, 0, 0, NO_CONE);
+            return;
+        }
+        axisX /= axisLength;
+        axisY /= axisLength;
+        axisZ /= axisLength;
+
+        float minCos = 1.0f;
+        for (int i = 0; i < normalCount; i++) {
+            minCos = Math.min(minCos, normals[i * 3] * axisX + normals[i * 3 + 1] * axisY + normals[i * 3 + 2] * axisZ);
+        }
+        setCone(nodeCones, node, axisX, axisY, axisZ, coneSine(minCos));
+    }
+
+    // Узел охватывает AABB детей; конус - вокруг суммы осей, раствор покрывает конусы всех детей
+    private static void mergeChildren(int node, int firstChild, int childCount,
+                                      float[] nodeBounds, float[] nodeCones) {
+        float[] bounds = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE,
+                -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        float axisX = 0, axisY = 0, axisZ = 0;
+        boolean coneValid = true;
+        for (int child = firstChild; child < firstChild + childCount; child++) {
+            for (int k = 0; k < 3; k++) {
+                bounds[k] = Math.min(bounds[k], nodeBounds[child * 6 + k]);
+                bounds[k + 3] = Math.max(bounds[k + 3], nodeBounds[child * 6 + k + 3]);
+            }
+            coneValid &= nodeCones[child * 4 + 3] < NO_CONE;
+            axisX += nodeCones[child * 4];
+            axisY += nodeCones[child * 4 + 1];
+            axisZ += nodeCones[child * 4 + 2];
+        }
+        System.arraycopy(bounds, 0, nodeBounds, node * 6, 6);
+
+        float axisLength = (float) Math.sqrt(axisX * axisX + axisY * axisY + axisZ * axisZ);
+        if (!coneValid || axisLength == 0) {
+            setCone(nodeCones, node, 0, 0, 0, NO_CONE);
+            return;
+        }
+        axisX /= axisLength;
+        axisY /= axisLength;
+        axisZ /= axisLength;
+
+        // Угол узла = max(угол между осями + угол ребёнка)
+        double maxAngle = 0;
+        for (int child = firstChild; child < firstChild + childCount; child++) {
+            float cos = nodeCones[child * 4] * axisX + nodeCones[child * 4 + 1] * axisY + nodeCones[child * 4 + 2] * axisZ;
+            double angle = Math.acos(Math.max(-1.0, Math.min(1.0, cos))) + Math.asin(nodeCones[child * 4 + 3]);
+            maxAngle = Math.max(maxAngle, angle);
+        }
+        setCone(nodeCones, node, axisX, axisY, axisZ,
+                maxAngle >= Math.PI / 2 ? NO_CONE : (float) Math.sin(maxAngle));
+    }
+
+    // Синус раствора по минимальному косинусу между нормалями и осью; раствор от 90 градусов бесполезен
+    private static float coneSine(float minCos) {
+        if (minCos <= 0) {
+            return NO_CONE;
+        }
+        return (float) Math.sqrt(Math.max(0, 1 - minCos * minCos));
+    }
+
+    private static void setCone(float[] nodeCones, int node, float x, float y, float z, float sine) {
+        nodeCones[node * 4] = x;
+        nodeCones[node * 4 + 1] = y;
+        nodeCones[node * 4 + 2] = z;
+        nodeCones[node * 4 + 3] = sine;
+    }
+
+    // Сфера вокруг центра bounding box вершин кластера
+    private static void computeSphere(int[] triangleOrder, int from, int to, IntBuffer indices,
+                                      FloatBuffer vertices, float[] centers, float[] radii, int cluster) {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            for (int k = 0; k < 3; k++) {
+                int v = indices.get(triangleOrder[i] * 3 + k) * 3;
+                minX = Math.min(minX, vertices.get(v)); maxX = Math.max(maxX, vertices.get(v));
+                minY = Math.min(minY, vertices.get(v + 1)); maxY = Math.max(maxY, vertices.get(v + 1));
+                minZ = Math.min(minZ, vertices.get(v + 2)); maxZ = Math.max(maxZ, vertices.get(v + 2));
+            }
+        }
+        float cx = (minX + maxX) * 0.5f;
+        float cy = (minY + maxY) * 0.5f;
+        float cz = (minZ + maxZ) * 0.5f;
+
+        float radiusSquared = 0;
+        for (int i = from; i < to; i++) {
+            for (int k = 0; k < 3; k++) {
+                int v = indices.get(triangleOrder[i] * 3 + k) * 3;
+                float dx = vertices.get(v) - cx, dy = vertices.get(v + 1) - cy, dz = vertices.get(v + 2) - cz;
+                radiusSquared = Math.max(radiusSquared, dx * dx + dy * dy + dz * dz);
+            }
+        }
+
+        centers[cluster * 3] = cx;
+        centers[cluster * 3 + 1] = cy;
+        centers[cluster * 3 + 2] = cz;
+        radii[cluster] = (float) Math.sqrt(radiusSquared);
+    }
+
+    private static long mortonCode(int x, int y, int z) {
+        return spreadBits(x) | (spreadBits(y) << 1) | (spreadBits(z) << 2);
+    }
+
+    // 10 бит -> 30 бит с двумя нулями между соседними битами
+    private static long spreadBits(int value) {
+        long v = value & 0x3FF;
+        v = (v | (v << 16)) & 0x030000FFL;
+        v = (v | (v << 8)) & 0x0300F00FL;
+        v = (v | (v << 4)) & 0x030C30C3L;
+        v = (v | (v << 2)) & 0x09249249L;
+        return v;
+    }
+
+    public int getClusterCount() {
+        return clusterCount;
+    }
+
+    // Массивы и буферы отдаются без копирования - только для чтения
+    public IntBuffer getTriangleOrder() {
+        return triangleOrder;
+    }
+
+    public int[] getClusterOffsets() {
+        return clusterOffsets;
+    }
+
+    public float[] getCenters() {
+        return centers;
+    }
+
+    public float[] getRadii() {
+        return radii;
+    }
+
+    public int[] getClusterVertexOffsets() {
+        return clusterVertexOffsets;
+    }
+
+    public IntBuffer getClusterVertices() {
+        return clusterVertices;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    // Корень иерархии; -1 у пустой модели
+    public int getRootNode() {
+        return nodeCount - 1;
+    }
+
+    public int[] getNodeFirstChild() {
+        return nodeFirstChild;
+    }
+
+    // 0 у листьев
+    public int[] getNodeChildCount() {
+        return nodeChildCount;
+    }
+
+    public float[] getNodeBounds() {
+        return nodeBounds;
+    }
+
+    public float[] getNodeCones() {
+        return nodeCones;
+    }
+}
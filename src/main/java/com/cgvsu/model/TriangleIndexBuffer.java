@@ -0,0 +1,78 @@
+package com.cgvsu.model;
+
+import java.nio.IntBuffer;
+
+// Триангулированная модель в виде плоских буферов индексов: по 3 на треугольник.
+// Индексы текстурных координат и нормалей равны -1, если у исходного полигона их нет.
+public final class TriangleIndexBuffer {
+    private final int triangleCount;
+    private final IntBuffer vertexIndices;
+    private final IntBuffer textureVertexIndices;
+    private final IntBuffer normalIndices;
+
+    private TriangleIndexBuffer(int triangleCount, IntBuffer vertexIndices,
+                                IntBuffer textureVertexIndices, IntBuffer normalIndices) {
+        this.triangleCount = triangleCount;
+        this.vertexIndices = vertexIndices;
+        this.textureVertexIndices = textureVertexIndices;
+        this.normalIndices = normalIndices;
+    }
+
+    // Веерная триангуляция, та же, что в Polygon.triangulate(), по полигонам в формате CSR
+    // (см. Model). Индексы текстур и нормалей полигона либо все неотрицательные, либо все -1.
+    // Если все полигоны - уже треугольники, буферы полигонов используются без копирования.
+    static TriangleIndexBuffer build(GeometryStorage storage, IntBuffer polygonOffsets,
+                                     IntBuffer polygonVertexIndices, IntBuffer polygonTextureVertexIndices,
+                                     IntBuffer polygonNormalIndices, int polygonCount) {
+        int triangleCount = polygonOffsets.get(polygonCount) - 2 * polygonCount;
+        if (triangleCount == polygonCount) {
+            return new TriangleIndexBuffer(triangleCount, polygonVertexIndices.asReadOnlyBuffer(),
+                    polygonTextureVertexIndices.asReadOnlyBuffer(), polygonNormalIndices.asReadOnlyBuffer());
+        }
+
+        IntBuffer vertexIndices = GeometryBuffers.allocateInts(storage, triangleCount * 3);
+        IntBuffer textureVertexIndices = GeometryBuffers.allocateInts(storage, triangleCount * 3);
+        IntBuffer normalIndices = GeometryBuffers.allocateInts(storage, triangleCount * 3);
+
+        int offset = 0;
+        for (int p = 0; p < polygonCount; p++) {
+            int first = polygonOffsets.get(p);
+            int end = polygonOffsets.get(p + 1);
+            for (int i = first + 1; i < end - 1; i++) {
+                vertexIndices.put(offset, polygonVertexIndices.get(first));
+                vertexIndices.put(offset + 1, polygonVertexIndices.get(i));
+                vertexIndices.put(offset + 2, polygonVertexIndices.get(i + 1));
+
+                textureVertexIndices.put(offset, polygonTextureVertexIndices.get(first));
+                textureVertexIndices.put(offset + 1, polygonTextureVertexIndices.get(i));
+                textureVertexIndices.put(offset + 2, polygonTextureVertexIndices.get(i + 1));
+
+                normalIndices.put(offset, polygonNormalIndices.get(first));
+                normalIndices.put(offset + 1, polygonNormalIndices.get(i));
+                normalIndices.put(offset + 2, polygonNormalIndices.get(i + 1));
+
+                offset += 3;
+            }
+        }
+
+        return new TriangleIndexBuffer(triangleCount, vertexIndices.asReadOnlyBuffer(),
+                textureVertexIndices.asReadOnlyBuffer(), normalIndices.asReadOnlyBuffer());
+    }
+
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    // Буферы отдаются без копирования - только для чтения, с абсолютной адресацией
+    public IntBuffer getVertexIndices() {
+        return vertexIndices;
+    }
+
+    public IntBuffer getTextureVertexIndices() {
+        return textureVertexIndices;
+    }
+
+    public IntBuffer getNormalIndices() {
+        return normalIndices;
+    }
+}
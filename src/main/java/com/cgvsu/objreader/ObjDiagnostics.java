@@ -0,0 +1,110 @@
+package com.cgvsu.objreader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Сводка нарушений, пропущенных при нестрогом разборе: счётчик по каждому виду и первые
+// EXAMPLES_PER_ISSUE примеров каждого вида с номерами строк (в порядке строк файла).
+// Во время разбора ничего не печатается - на большом "грязном" файле вывод в консоль
+// на каждую строку занимал больше времени, чем сам разбор.
+public final class ObjDiagnostics {
+    public static final int EXAMPLES_PER_ISSUE = 5;
+
+    public static final class Example {
+        private final ObjIssue issue;
+        private final int lineNumber;
+        private final String message;
+
+        Example(ObjIssue issue, int lineNumber, String message) {
+            this.issue = issue;
+            this.lineNumber = lineNumber;
+            this.message = message;
+        }
+
+        public ObjIssue getIssue() { return issue; }
+        public int getLineNumber() { return lineNumber; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "line " + lineNumber + ": " + message;
+        }
+    }
+
+    private final long[] counts = new long[ObjIssue.values().length];
+    private final int[] exampleCounts = new int[ObjIssue.values().length];
+    private final List<Example> examples = new ArrayList<>();
+
+    // Учитывает нарушение; true, если для него ещё нужен пример (тогда вызвать addExample).
+    // Сообщение собирается только для примеров, а не для каждого нарушения
+    boolean count(ObjIssue issue) {
+        counts[issue.ordinal()]++;
+        return exampleCounts[issue.ordinal()] < EXAMPLES_PER_ISSUE;
+    }
+
+    void addExample(ObjIssue issue, int lineNumber, String message) {
+        exampleCounts[issue.ordinal()]++;
+        examples.add(new Example(issue, lineNumber, message));
+    }
+
+    // Дописывает сводку следующего куска файла; его строки нумеровались с нуля
+    void append(ObjDiagnostics next, int lineOffset) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += next.counts[i];
+        }
+        for (Example example : next.examples) {
+            if (exampleCounts[example.issue.ordinal()] < EXAMPLES_PER_ISSUE) {
+                addExample(example.issue, example.lineNumber + lineOffset, example.message);
+            }
+        }
+    }
+
+    // Для чтения из кэша
+    void setCount(ObjIssue issue, long count) {
+        counts[issue.ordinal()] = count;
+    }
+
+    public long getCount(ObjIssue issue) {
+        return counts[issue.ordinal()];
+    }
+
+    public long getTotalCount() {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return getTotalCount() == 0;
+    }
+
+    public List<Example> getExamples() {
+        return Collections.unmodifiableList(examples);
+    }
+
+    // Одна строка: "12 issues: 10 faces with ..., 2 invalid face vertices"
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(getTotalCount()).append(getTotalCount() == 1 ? " issue" : " issues");
+        String separator = ": ";
+        for (ObjIssue issue : ObjIssue.values()) {
+            if (counts[issue.ordinal()] > 0) {
+                summary.append(separator).append(counts[issue.ordinal()]).append(' ').append(issue.getDescription());
+                separator = ", ";
+            }
+        }
+        return summary.toString();
+    }
+
+    // Сводка и примеры, по одному на строку
+    public String getReport() {
+        StringBuilder report = new StringBuilder(getSummary());
+        for (Example example : examples) {
+            report.append(System.lineSeparator()).append("  ").append(example);
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package com.cgvsu.objreader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+// Участок файла [start, end) как отдельный канал. Чтение позиционное и не трогает позицию
+// общего FileChannel, поэтому несколько участков одного файла читаются параллельно.
+// Закрытие участка файл не закрывает.
+final class ObjFileRegion implements ReadableByteChannel {
+    private final FileChannel file;
+    private final long end;
+    private long position;
+
+    ObjFileRegion(FileChannel file, long start, long end) {
+        this.file = file;
+        this.position = start;
+        this.end = end;
+    }
+
+    @Override
+    public int read(ByteBuffer destination) throws IOException {
+        long remaining = end - position;
+        if (remaining <= 0) {
+            return -1;
+        }
+
+        int limit = destination.limit();
+        if (destination.remaining() > remaining) {
+            destination.limit(destination.position() + (int) remaining);
+        }
+        try {
+            int read = file.read(destination, position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        } finally {
+            destination.limit(limit);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return file.isOpen();
+    }
+
+    @Override
+    public void close() {
+    }
+}
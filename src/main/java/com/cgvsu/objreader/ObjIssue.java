@@ -0,0 +1,25 @@
+package com.cgvsu.objreader;
+
+// Виды нарушений в гранях, после которых разбор может продолжиться (см. ObjParsePolicy)
+public enum ObjIssue {
+    // Меньше трёх вершин в строке "f"; грань пропускается
+    SHORT_FACE("faces with less than 3 vertices"),
+    // Угол грани с пустым, нулевым или нечисловым индексом; угол пропускается
+    INVALID_FACE_VERTEX("invalid face vertices"),
+    // После пропуска плохих углов осталось меньше трёх вершин; грань пропускается
+    TOO_FEW_VALID_VERTICES("faces with less than 3 valid vertices"),
+    // Текстурные индексы заданы не для всех углов; у грани они отбрасываются
+    MISMATCHED_TEXTURE_INDICES("faces with mismatched vertex/texture indices"),
+    // Нормали заданы не для всех углов; у грани они отбрасываются
+    MISMATCHED_NORMAL_INDICES("faces with mismatched vertex/normal indices");
+
+    private final String description;
+
+    ObjIssue(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,329 @@
+package com.cgvsu.objreader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Разбор одной строки OBJ прямо в байтах буфера чтения: токены - диапазоны [start, end)
+// в переиспользуемых массивах, числа пишутся сразу в ObjMeshData. Нарушения в гранях
+// по политике policy либо бросаются как ObjReaderException, либо учитываются в mesh.diagnostics.
+// Разделители - пробельные символы ASCII; OBJ - текстовый формат в ASCII.
+final class ObjLineParser {
+    private static final int MAX_FACE_PARTS = 3;
+
+    private final ObjParsePolicy policy;
+
+    private int[] tokenStarts = new int[16];
+    private int[] tokenEnds = new int[16];
+    private int tokenCount;
+    // Границы частей "v/vt/vn" текущего угла грани
+    private final int[] partStarts = new int[MAX_FACE_PARTS];
+    private final int[] partEnds = new int[MAX_FACE_PARTS];
+    // Сколько углов текущей грани получили индекс текстуры и нормали (включая маркеры -1)
+    private int faceTextureCount;
+    private int faceNormalCount;
+
+    ObjLineParser(ObjParsePolicy policy) {
+        this.policy = policy;
+    }
+
+    // Разбирает строку [start, end); false, если строка пустая после обрезки пробелов
+    boolean parseLine(byte[] bytes, int start, int end, int lineNumber, ObjMeshData mesh) {
+        // Как String.trim(): по краям отбрасываются все символы <= ' '
+        while (start < end && (bytes[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (bytes[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return false;
+        }
+
+        // Пропускаем комментарии
+        if (bytes[start] == '#') {
+            return true;
+        }
+
+        tokenize(bytes, start, end);
+        int keywordStart = tokenStarts[0];
+        int keywordLength = tokenEnds[0] - keywordStart;
+
+        if (keywordLength == 1 && bytes[keywordStart] == 'v') {
+            parseVertex(bytes, lineNumber, mesh);
+        } else if (keywordLength == 1 && bytes[keywordStart] == 'f') {
+            parseFace(bytes, lineNumber, mesh);
+        } else if (keywordLength == 2 && bytes[keywordStart] == 'v' && bytes[keywordStart + 1] == 't') {
+            parseTextureVertex(bytes, lineNumber, mesh);
+        } else if (keywordLength == 2 && bytes[keywordStart] == 'v' && bytes[keywordStart + 1] == 'n') {
+            parseNormal(bytes, lineNumber, mesh);
+        }
+        // Объекты, группы и неизвестные токены игнорируются
+        return true;
+    }
+
+    private void tokenize(byte[] bytes, int start, int end) {
+        tokenCount = 0;
+        int i = start;
+        while (i < end) {
+            while (i < end && isWhitespace(bytes[i])) {
+                i++;
+            }
+            if (i == end) {
+                break;
+            }
+            int tokenStart = i;
+            while (i < end && !isWhitespace(bytes[i])) {
+                i++;
+            }
+            if (tokenCount == tokenStarts.length) {
+                tokenStarts = Arrays.copyOf(tokenStarts, tokenCount * 2);
+                tokenEnds = Arrays.copyOf(tokenEnds, tokenCount * 2);
+            }
+            tokenStarts[tokenCount] = tokenStart;
+            tokenEnds[tokenCount] = i;
+            tokenCount++;
+        }
+    }
+
+    // Токен 0 - ключевое слово, аргументы начинаются с 1
+    private void parseVertex(byte[] bytes, int lineNumber, ObjMeshData mesh) {
+        if (tokenCount - 1 < 3) {
+            throw new ObjReaderException("Vertex requires at least 3 coordinates", lineNumber);
+        }
+
+        try {
+            float x = parseFloatToken(bytes, 1);
+            float y = parseFloatToken(bytes, 2);
+            float z = parseFloatToken(bytes, 3);
+
+            mesh.addPosition(x, y, z);
+        } catch (NumberFormatException e) {
+            throw new ObjReaderException("Invalid number format for vertex: " + e.getMessage(), lineNumber);
+        }
+    }
+
+    private void parseTextureVertex(byte[] bytes, int lineNumber, ObjMeshData mesh) {
+        if (tokenCount - 1 < 2) {
+            throw new ObjReaderException("Texture vertex requires at least 2 coordinates", lineNumber);
+        }
+
+        try {
+            float u = parseFloatToken(bytes, 1);
+            float v = parseFloatToken(bytes, 2);
+
+            mesh.addTextureCoordinate(u, v);
+        } catch (NumberFormatException e) {
+            throw new ObjReaderException("Invalid number format for texture vertex: " + e.getMessage(), lineNumber);
+        }
+    }
+
+    private void parseNormal(byte[] bytes, int lineNumber, ObjMeshData mesh) {
+        if (tokenCount - 1 < 3) {
+            throw new ObjReaderException("Normal requires 3 coordinates", lineNumber);
+        }
+
+        try {
+            float x = parseFloatToken(bytes, 1);
+            float y = parseFloatToken(bytes, 2);
+            float z = parseFloatToken(bytes, 3);
+
+            mesh.addNormal(x, y, z);
+        } catch (NumberFormatException e) {
+            throw new ObjReaderException("Invalid number format for normal: " + e.getMessage(), lineNumber);
+        }
+    }
+
+    private void parseFace(byte[] bytes, int lineNumber, ObjMeshData mesh) {
+        if (tokenCount == 1) {
+            // Некоторые файлы могут содержать пустые полигоны - пропускаем их
+            return;
+        }
+
+        if (tokenCount - 1 < 3) {
+            report(ObjIssue.SHORT_FACE, lineNumber, mesh);
+            return;
+        }
+
+        // Углы пишутся в mesh сразу; грань либо закрывается, либо отбрасывается целиком
+        faceTextureCount = 0;
+        faceNormalCount = 0;
+        for (int t = 1; t < tokenCount; t++) {
+            int start = tokenStarts[t];
+            int end = tokenEnds[t];
+            while (start < end && (bytes[start] & 0xFF) <= ' ') {
+                start++;
+            }
+            while (end > start && (bytes[end - 1] & 0xFF) <= ' ') {
+                end--;
+            }
+            if (start == end) {
+                continue; // Пропускаем пустые токены
+            }
+
+            // Проблемные вершины пропускаются, обработка продолжается
+            parseFaceVertex(bytes, start, end, lineNumber, mesh);
+        }
+
+        int vertexCount = mesh.openFaceCorners();
+        int textureCount = faceTextureCount;
+        int normalCount = faceNormalCount;
+        if (vertexCount < 3) {
+            mesh.discardFace();
+            report(ObjIssue.TOO_FEW_VALID_VERTICES, lineNumber, mesh);
+            return;
+        }
+
+        // Проверяем согласованность индексов
+        if (textureCount != 0 && textureCount != vertexCount) {
+            report(ObjIssue.MISMATCHED_TEXTURE_INDICES, lineNumber, mesh);
+            textureCount = 0;
+        }
+
+        if (normalCount != 0 && normalCount != vertexCount) {
+            report(ObjIssue.MISMATCHED_NORMAL_INDICES, lineNumber, mesh);
+            normalCount = 0;
+        }
+
+        byte flags = 0;
+        if (textureCount != 0) {
+            flags |= ObjMeshData.FACE_HAS_TEXTURE;
+        }
+        if (normalCount != 0) {
+            flags |= ObjMeshData.FACE_HAS_NORMALS;
+        }
+        mesh.closeFace(flags);
+    }
+
+    // Добавляет угол грани. Как и раньше, вершина добавляется до разбора текстурного индекса,
+    // поэтому ошибка в нём оставляет угол без текстуры и нормали - счётчики не совпадут
+    // с числом вершин, и грань отбросит эти индексы как несогласованные.
+    private void parseFaceVertex(byte[] bytes, int start, int end, int lineNumber, ObjMeshData mesh) {
+        // Разделяем по "/", сохраняя пустые элементы; части после третьей не нужны
+        int partCount = 0;
+        int partStart = start;
+        for (int i = start; i <= end && partCount < MAX_FACE_PARTS; i++) {
+            if (i == end || bytes[i] == '/') {
+                partStarts[partCount] = partStart;
+                partEnds[partCount] = i;
+                partCount++;
+                partStart = i + 1;
+            }
+        }
+
+        if (partEnds[0] == partStarts[0]) {
+            reportInvalidVertex("Missing vertex index in face: ", bytes, start, end, "", lineNumber, mesh);
+            return;
+        }
+
+        try {
+            // Индекс вершины (обязательный)
+            int vertexIndex = parseIndex(bytes, partStarts[0], partEnds[0], "vertex");
+            mesh.addCorner(resolve(vertexIndex, mesh.positionCount), -1, -1);
+            int corner = mesh.cornerCount - 1;
+            if (vertexIndex < 0) {
+                mesh.markRelative(corner, ObjMeshData.RELATIVE_VERTEX);
+            }
+
+            // Текстурные координаты (опциональные); -1 - маркер отсутствия после уже заданных
+            if (partCount > 1 && partEnds[1] > partStarts[1]) {
+                int textureIndex = parseIndex(bytes, partStarts[1], partEnds[1], "texture");
+                mesh.cornerTextureVertices[corner] = resolve(textureIndex, mesh.textureCoordinateCount);
+                if (textureIndex < 0) {
+                    mesh.markRelative(corner, ObjMeshData.RELATIVE_TEXTURE);
+                }
+                faceTextureCount++;
+            } else if (partCount > 1 && faceTextureCount > 0) {
+                faceTextureCount++;
+            }
+
+            // Нормали (опциональные)
+            if (partCount > 2 && partEnds[2] > partStarts[2]) {
+                int normalIndex = parseIndex(bytes, partStarts[2], partEnds[2], "normal");
+                mesh.cornerNormals[corner] = resolve(normalIndex, mesh.normalCount);
+                if (normalIndex < 0) {
+                    mesh.markRelative(corner, ObjMeshData.RELATIVE_NORMAL);
+                }
+                faceNormalCount++;
+            } else if (partCount > 2 && faceNormalCount > 0) {
+                faceNormalCount++;
+            }
+        } catch (NumberFormatException e) {
+            reportInvalidVertex("Invalid face index format: ", bytes, start, end, " - " + e.getMessage(),
+                    lineNumber, mesh);
+        }
+    }
+
+    private void report(ObjIssue issue, int lineNumber, ObjMeshData mesh) {
+        String message = switch (issue) {
+            case SHORT_FACE -> "Face with less than 3 vertices";
+            case TOO_FEW_VALID_VERTICES -> "Face with less than 3 valid vertices";
+            case MISMATCHED_TEXTURE_INDICES -> "Mismatched vertex/texture indices";
+            case MISMATCHED_NORMAL_INDICES -> "Mismatched vertex/normal indices";
+            case INVALID_FACE_VERTEX -> "Invalid face vertex";
+        };
+        if (policy == ObjParsePolicy.STRICT) {
+            throw new ObjReaderException(message, lineNumber);
+        }
+        if (mesh.diagnostics.count(issue)) {
+            mesh.diagnostics.addExample(issue, lineNumber, message);
+        }
+    }
+
+    // Сообщение с текстом токена собирается, только если оно будет показано
+    private void reportInvalidVertex(String prefix, byte[] bytes, int start, int end, String suffix,
+                                     int lineNumber, ObjMeshData mesh) {
+        if (policy == ObjParsePolicy.STRICT) {
+            throw new ObjReaderException(prefix + decode(bytes, start, end) + suffix, lineNumber);
+        }
+        if (mesh.diagnostics.count(ObjIssue.INVALID_FACE_VERTEX)) {
+            mesh.diagnostics.addExample(ObjIssue.INVALID_FACE_VERTEX, lineNumber,
+                    prefix + decode(bytes, start, end) + suffix);
+        }
+    }
+
+    private static int parseIndex(byte[] bytes, int start, int end, String type) {
+        while (start < end && (bytes[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (bytes[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            throw new NumberFormatException("Empty " + type + " index");
+        }
+
+        int index = ObjNumberParser.parseInt(bytes, start, end);
+
+        if (index == 0) {
+            throw new NumberFormatException("Zero " + type + " index (OBJ indices start from 1)");
+        }
+
+        // OBJ поддерживает отрицательные индексы (относительные), их разрешает resolve
+        if (index < 0) {
+            return index;
+        }
+
+        // Преобразуем в 0-based индекс
+        return index - 1;
+    }
+
+    // -1 - последний элемент, объявленный до этой строки. Результат может выйти за пределы
+    // куска (стать отрицательным) - ObjMeshData.merge сдвинет его на предыдущие куски.
+    // Выход за пределы файла не проверяется, как и для положительных индексов.
+    private static int resolve(int index, int definedCount) {
+        return index < 0 ? definedCount + index : index;
+    }
+
+    private float parseFloatToken(byte[] bytes, int token) {
+        return ObjNumberParser.parseFloat(bytes, tokenStarts[token], tokenEnds[token]);
+    }
+
+    private static String decode(byte[] bytes, int start, int end) {
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    // Как Character.isWhitespace для символов ASCII
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1C && b <= 0x1F);
+    }
+}
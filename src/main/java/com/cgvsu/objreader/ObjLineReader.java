@@ -0,0 +1,111 @@
+package com.cgvsu.objreader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+// Построчное чтение из канала через один переиспользуемый буфер.
+// Текущая строка доступна как диапазон байтов [getLineStart(), getLineEnd()) массива getBuffer()
+// и действительна до следующего вызова nextLine(). Буфер растёт только под строку длиннее себя,
+// так что память не зависит от размера файла.
+final class ObjLineReader {
+    static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private byte[] buffer;
+    private ByteBuffer view;
+    // Данные в буфере: [position, limit)
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+    private int lineStart;
+    private int lineEnd;
+    private int lineNumber;
+    private long bytesRead;
+
+    ObjLineReader(ReadableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    ObjLineReader(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = new byte[bufferSize];
+        this.view = ByteBuffer.wrap(buffer);
+    }
+
+    // Переход к следующей строке; false в конце входа.
+    // Разделители строк - "\n", "\r\n" и одиночный "\r", как у Scanner.nextLine()
+    boolean nextLine() throws IOException {
+        int scan = position;
+        while (true) {
+            for (; scan < limit; scan++) {
+                byte b = buffer[scan];
+                if (b == '\n' || b == '\r') {
+                    // "\r" в самом конце буфера: нужно знать, не идёт ли следом "\n"
+                    if (b == '\r' && scan + 1 == limit && !endOfInput) {
+                        break;
+                    }
+                    lineStart = position;
+                    lineEnd = scan;
+                    position = scan + 1;
+                    if (b == '\r' && position < limit && buffer[position] == '\n') {
+                        position++;
+                    }
+                    lineNumber++;
+                    return true;
+                }
+            }
+
+            if (endOfInput) {
+                if (position == limit) {
+                    return false;
+                }
+                // Последняя строка без перевода строки
+                lineStart = position;
+                lineEnd = limit;
+                position = limit;
+                lineNumber++;
+                return true;
+            }
+
+            scan -= position;
+            fill();
+        }
+    }
+
+    // Сдвигает непрочитанный хвост в начало буфера и дочитывает канал
+    private void fill() throws IOException {
+        int remaining = limit - position;
+        if (remaining == buffer.length) {
+            // Строка не помещается в буфер целиком
+            byte[] grown = new byte[buffer.length * 2];
+            System.arraycopy(buffer, position, grown, 0, remaining);
+            buffer = grown;
+            view = ByteBuffer.wrap(buffer);
+        } else {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        }
+        position = 0;
+        limit = remaining;
+
+        view.limit(buffer.length);
+        view.position(limit);
+        int read = channel.read(view);
+        while (read == 0) {
+            read = channel.read(view);
+        }
+        if (read < 0) {
+            endOfInput = true;
+        } else {
+            limit += read;
+            bytesRead += read;
+        }
+    }
+
+    byte[] getBuffer() { return buffer; }
+    int getLineStart() { return lineStart; }
+    int getLineEnd() { return lineEnd; }
+    int getLineNumber() { return lineNumber; }
+    // Сколько байтов прочитано из канала (включая ещё не разобранный остаток буфера)
+    long getBytesRead() { return bytesRead; }
+}
@@ -0,0 +1,413 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.GeometryStorage;
+import com.cgvsu.model.Model;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32C;
+
+// Двоичный кэш разобранного OBJ: те же плоские массивы, что в ObjMeshData, после заголовка
+// с данными об исходном файле. Каждый массив отображается в память (FileChannel.map) и либо
+// копируется целиком в кучу, либо становится буфером модели вне кучи без копирования (loadMapped).
+//
+// Формат (little-endian):
+//   long MAGIC, int VERSION, int длина пути, байты пути UTF-8 (до кратности 8),
+//   long размер исходного файла, long время изменения (мс), int CRC32C содержимого, int 0,
+//   int positionCount, textureCoordinateCount, normalCount, faceCount, cornerCount, 0,
+//   float positions[3 * n], textureCoordinates[2 * n], normals[3 * n],
+//   int faceOffsets[faceCount + 1], cornerVertices, cornerTextureVertices, cornerNormals[cornerCount],
+//   byte faceFlags[faceCount],
+//   (индексы текстур и нормалей уже приведены ObjMeshData.normalizeAttributes)
+//   сводка нарушений: long count для каждого ObjIssue, int число примеров,
+//   для каждого примера int ObjIssue.ordinal, int номер строки, int длина, байты сообщения UTF-8
+//
+// Кэш устарел, если не совпали путь или размер. Если отличается только время изменения
+// (файл скопирован или "тронут"), сравнивается контрольная сумма содержимого - это всё ещё
+// намного быстрее разбора - и при совпадении время в заголовке обновляется.
+final class ObjMeshCache {
+    static final String FILE_EXTENSION = ".mesh";
+
+    private static final long MAGIC = 0x314853454D555643L; // "CVUMESH1"
+    private static final int VERSION = 3;
+    private static final int COUNT_FIELDS = 6;
+    private static final int IO_BUFFER_SIZE = 1 << 20;
+
+    private ObjMeshCache() {
+    }
+
+    // Данные исходного файла, с которыми сверяется заголовок кэша
+    static final class Source {
+        final Path path;
+        final long size;
+        final long modifiedMillis;
+
+        Source(Path path, long size, long modifiedMillis) {
+            this.path = path;
+            this.size = size;
+            this.modifiedMillis = modifiedMillis;
+        }
+
+        static Source of(Path path) throws IOException {
+            Path absolute = path.toAbsolutePath().normalize();
+            BasicFileAttributes attributes = Files.readAttributes(absolute, BasicFileAttributes.class);
+            return new Source(absolute, attributes.size(), attributes.lastModifiedTime().toMillis());
+        }
+
+        boolean sameStamp(Source other) {
+            return size == other.size && modifiedMillis == other.modifiedMillis;
+        }
+    }
+
+    // Рядом с файлом (cacheDirectory == null): model.obj -> model.obj.mesh.
+    // В общем каталоге к имени добавляется сумма полного пути, чтобы одноимённые файлы не пересекались
+    static Path locate(Source source, Path cacheDirectory) {
+        String fileName = source.path.getFileName().toString();
+        if (cacheDirectory == null) {
+            return source.path.resolveSibling(fileName + FILE_EXTENSION);
+        }
+        CRC32C pathChecksum = new CRC32C();
+        pathChecksum.update(source.path.toString().getBytes(StandardCharsets.UTF_8));
+        return cacheDirectory.resolve(fileName + "-" + Long.toHexString(pathChecksum.getValue()) + FILE_EXTENSION);
+    }
+
+    // Массивы кэша, отображённые в память. Отображение остаётся действительным и после
+    // закрытия канала, пока на буферы есть ссылки.
+    private static final class Mapping {
+        int positionCount;
+        int textureCoordinateCount;
+        int normalCount;
+        int faceCount;
+        int cornerCount;
+        ByteBuffer positions;
+        ByteBuffer textureCoordinates;
+        ByteBuffer normals;
+        ByteBuffer faceOffsets;
+        ByteBuffer cornerVertices;
+        ByteBuffer cornerTextureVertices;
+        ByteBuffer cornerNormals;
+        ByteBuffer faceFlags;
+        ObjDiagnostics diagnostics;
+    }
+
+    // Копия в кучу; null, если кэша нет, он устарел или повреждён
+    static ObjMeshData load(Path cacheFile, Source source) throws IOException {
+        Mapping mapping = map(cacheFile, source);
+        if (mapping == null) {
+            return null;
+        }
+
+        ObjMeshData mesh = new ObjMeshData();
+        mesh.positions = readFloats(mapping.positions, mapping.positionCount * 3);
+        mesh.positionCount = mapping.positionCount;
+        mesh.textureCoordinates = readFloats(mapping.textureCoordinates, mapping.textureCoordinateCount * 2);
+        mesh.textureCoordinateCount = mapping.textureCoordinateCount;
+        mesh.normals = readFloats(mapping.normals, mapping.normalCount * 3);
+        mesh.normalCount = mapping.normalCount;
+        mesh.faceOffsets = readInts(mapping.faceOffsets, mapping.faceCount + 1);
+        mesh.cornerVertices = readInts(mapping.cornerVertices, mapping.cornerCount);
+        mesh.cornerTextureVertices = readInts(mapping.cornerTextureVertices, mapping.cornerCount);
+        mesh.cornerNormals = readInts(mapping.cornerNormals, mapping.cornerCount);
+        mesh.cornerCount = mapping.cornerCount;
+        mesh.faceFlags = new byte[mapping.faceCount];
+        mapping.faceFlags.get(mesh.faceFlags);
+        mesh.faceCount = mapping.faceCount;
+        mesh.diagnostics = mapping.diagnostics;
+        return mesh;
+    }
+
+    // Модель прямо поверх отображённого файла: геометрия не копируется ни в кучу, ни в память
+    // процесса - страницы подгружаются ОС по мере обращения. null - как у load
+    static ObjReadResult loadMapped(Path cacheFile, Source source) throws IOException {
+        Mapping mapping = map(cacheFile, source);
+        if (mapping == null) {
+            return null;
+        }
+
+        Model model = Model.wrap(GeometryStorage.OFF_HEAP,
+                mapping.positions.asFloatBuffer(), mapping.positionCount,
+                mapping.textureCoordinates.asFloatBuffer(), mapping.textureCoordinateCount,
+                mapping.normals.asFloatBuffer(), mapping.normalCount,
+                mapping.faceOffsets.asIntBuffer(), mapping.cornerVertices.asIntBuffer(),
+                mapping.cornerTextureVertices.asIntBuffer(), mapping.cornerNormals.asIntBuffer(),
+                mapping.faceCount);
+        return new ObjReadResult(model, mapping.diagnostics);
+    }
+
+    private static Mapping map(Path cacheFile, Source source) throws IOException {
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            ByteBuffer prefix = readAt(channel, 0, Long.BYTES + 2 * Integer.BYTES);
+            if (prefix == null || prefix.getLong() != MAGIC || prefix.getInt() != VERSION) {
+                return null;
+            }
+            int pathLength = prefix.getInt();
+            if (pathLength < 0 || pathLength > channel.size()) {
+                return null;
+            }
+            int stampPosition = align8(prefix.capacity() + pathLength);
+            ByteBuffer header = readAt(channel, prefix.capacity(),
+                    stampPosition - prefix.capacity() + 2 * Long.BYTES + 2 * Integer.BYTES
+                            + COUNT_FIELDS * Integer.BYTES);
+            if (header == null) {
+                return null;
+            }
+            byte[] pathBytes = new byte[pathLength];
+            header.get(pathBytes);
+            header.position(stampPosition - prefix.capacity());
+            if (!source.path.toString().equals(new String(pathBytes, StandardCharsets.UTF_8))) {
+                return null;
+            }
+
+            long size = header.getLong();
+            long modifiedMillis = header.getLong();
+            int checksum = header.getInt();
+            header.getInt();
+            if (size != source.size) {
+                return null;
+            }
+
+            Mapping mapping = new Mapping();
+            mapping.positionCount = header.getInt();
+            mapping.textureCoordinateCount = header.getInt();
+            mapping.normalCount = header.getInt();
+            mapping.faceCount = header.getInt();
+            mapping.cornerCount = header.getInt();
+            header.getInt();
+            if ((mapping.positionCount | mapping.textureCoordinateCount | mapping.normalCount
+                    | mapping.faceCount | mapping.cornerCount) < 0) {
+                return null;
+            }
+
+            long position = stampPosition + 2 * Long.BYTES + 2 * Integer.BYTES + COUNT_FIELDS * Integer.BYTES;
+            long arraysEnd = position + 4L * (3L * mapping.positionCount + 2L * mapping.textureCoordinateCount
+                    + 3L * mapping.normalCount + mapping.faceCount + 1 + 3L * mapping.cornerCount) + mapping.faceCount;
+            if (arraysEnd > channel.size()) {
+                return null;
+            }
+
+            if (modifiedMillis != source.modifiedMillis) {
+                if (checksum(source.path) != checksum) {
+                    return null;
+                }
+                refreshStamp(cacheFile, stampPosition, source);
+            }
+
+            mapping.positions = mapRegion(channel, position, 12L * mapping.positionCount);
+            position += 12L * mapping.positionCount;
+            mapping.textureCoordinates = mapRegion(channel, position, 8L * mapping.textureCoordinateCount);
+            position += 8L * mapping.textureCoordinateCount;
+            mapping.normals = mapRegion(channel, position, 12L * mapping.normalCount);
+            position += 12L * mapping.normalCount;
+            mapping.faceOffsets = mapRegion(channel, position, 4L * (mapping.faceCount + 1));
+            position += 4L * (mapping.faceCount + 1);
+            mapping.cornerVertices = mapRegion(channel, position, 4L * mapping.cornerCount);
+            position += 4L * mapping.cornerCount;
+            mapping.cornerTextureVertices = mapRegion(channel, position, 4L * mapping.cornerCount);
+            position += 4L * mapping.cornerCount;
+            mapping.cornerNormals = mapRegion(channel, position, 4L * mapping.cornerCount);
+            position += 4L * mapping.cornerCount;
+            mapping.faceFlags = mapRegion(channel, position, mapping.faceCount);
+            position += mapping.faceCount;
+
+            ByteBuffer diagnostics = mapRegion(channel, position, channel.size() - position);
+            mapping.diagnostics = readDiagnostics(diagnostics);
+            return diagnostics.hasRemaining() ? null : mapping;
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException
+                 | NegativeArraySizeException exception) {
+            // Обрезанный или испорченный файл - просто разбираем OBJ заново
+            return null;
+        }
+    }
+
+    // Каждый массив отображается отдельно: один буфер ограничен 2 ГБ, весь кэш - нет
+    private static ByteBuffer mapRegion(FileChannel channel, long position, long length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // null, если файл короче
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return null;
+            }
+        }
+        return buffer.flip();
+    }
+
+    // Запись через временный файл: параллельная загрузка никогда не видит наполовину записанный кэш
+    static void store(Path cacheFile, ObjMeshData mesh, Source source) throws IOException {
+        int checksum = checksum(source.path);
+        // Файл поменялся во время разбора - такой кэш сразу был бы устаревшим
+        if (!Source.of(source.path).sameStamp(source)) {
+            return;
+        }
+
+        // Отображение в память ограничено 2 ГБ на буфер - массив больше не смог бы загрузиться
+        long largestArray = 4L * Math.max(Math.max(3L * mesh.positionCount, 2L * mesh.textureCoordinateCount),
+                Math.max(3L * mesh.normalCount, Math.max(mesh.faceCount + 1L, mesh.cornerCount)));
+        if (largestArray > Integer.MAX_VALUE) {
+            return;
+        }
+
+        Path directory = cacheFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, cacheFile.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                writeHeader(channel, source, checksum, mesh);
+                ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                writeFloats(channel, buffer, mesh.positions, mesh.positionCount * 3);
+                writeFloats(channel, buffer, mesh.textureCoordinates, mesh.textureCoordinateCount * 2);
+                writeFloats(channel, buffer, mesh.normals, mesh.normalCount * 3);
+                writeInts(channel, buffer, mesh.faceOffsets, mesh.faceCount + 1);
+                writeInts(channel, buffer, mesh.cornerVertices, mesh.cornerCount);
+                writeInts(channel, buffer, mesh.cornerTextureVertices, mesh.cornerCount);
+                writeInts(channel, buffer, mesh.cornerNormals, mesh.cornerCount);
+                for (int offset = 0; offset < mesh.faceCount; offset += IO_BUFFER_SIZE) {
+                    int length = Math.min(IO_BUFFER_SIZE, mesh.faceCount - offset);
+                    buffer.clear();
+                    buffer.put(mesh.faceFlags, offset, length);
+                    writeFully(channel, buffer.flip());
+                }
+                writeDiagnostics(channel, mesh.diagnostics);
+            }
+            Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void writeHeader(FileChannel channel, Source source, int checksum,
+                                    ObjMeshData mesh) throws IOException {
+        byte[] pathBytes = source.path.toString().getBytes(StandardCharsets.UTF_8);
+        int pathEnd = align8(Long.BYTES + 2 * Integer.BYTES + pathBytes.length);
+        ByteBuffer header = ByteBuffer.allocate(pathEnd + 2 * Long.BYTES + 2 * Integer.BYTES
+                + COUNT_FIELDS * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(MAGIC).putInt(VERSION).putInt(pathBytes.length).put(pathBytes);
+        header.position(pathEnd);
+        header.putLong(source.size).putLong(source.modifiedMillis).putInt(checksum).putInt(0);
+        header.putInt(mesh.positionCount).putInt(mesh.textureCoordinateCount).putInt(mesh.normalCount)
+                .putInt(mesh.faceCount).putInt(mesh.cornerCount).putInt(0);
+        writeFully(channel, header.flip());
+    }
+
+    private static void writeDiagnostics(FileChannel channel, ObjDiagnostics diagnostics) throws IOException {
+        ObjIssue[] issues = ObjIssue.values();
+        int size = issues.length * Long.BYTES + Integer.BYTES;
+        byte[][] messages = new byte[diagnostics.getExamples().size()][];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = diagnostics.getExamples().get(i).getMessage().getBytes(StandardCharsets.UTF_8);
+            size += 3 * Integer.BYTES + messages[i].length;
+        }
+
+        ByteBuffer section = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        for (ObjIssue issue : issues) {
+            section.putLong(diagnostics.getCount(issue));
+        }
+        section.putInt(messages.length);
+        for (int i = 0; i < messages.length; i++) {
+            ObjDiagnostics.Example example = diagnostics.getExamples().get(i);
+            section.putInt(example.getIssue().ordinal()).putInt(example.getLineNumber())
+                    .putInt(messages[i].length).put(messages[i]);
+        }
+        writeFully(channel, section.flip());
+    }
+
+    private static ObjDiagnostics readDiagnostics(ByteBuffer mapped) {
+        ObjIssue[] issues = ObjIssue.values();
+        ObjDiagnostics diagnostics = new ObjDiagnostics();
+        for (ObjIssue issue : issues) {
+            diagnostics.setCount(issue, mapped.getLong());
+        }
+        int exampleCount = mapped.getInt();
+        for (int i = 0; i < exampleCount; i++) {
+            ObjIssue issue = issues[mapped.getInt()];
+            int lineNumber = mapped.getInt();
+            byte[] message = new byte[mapped.getInt()];
+            mapped.get(message);
+            diagnostics.addExample(issue, lineNumber, new String(message, StandardCharsets.UTF_8));
+        }
+        return diagnostics;
+    }
+
+    // Массовое копирование из отображённой памяти
+    private static float[] readFloats(ByteBuffer mapped, int count) {
+        float[] values = new float[count];
+        mapped.asFloatBuffer().get(values);
+        return values;
+    }
+
+    private static int[] readInts(ByteBuffer mapped, int count) {
+        int[] values = new int[count];
+        mapped.asIntBuffer().get(values);
+        return values;
+    }
+
+    private static void writeFloats(FileChannel channel, ByteBuffer buffer, float[] values, int count) throws IOException {
+        int perBuffer = buffer.capacity() / Float.BYTES;
+        for (int offset = 0; offset < count; offset += perBuffer) {
+            int length = Math.min(perBuffer, count - offset);
+            buffer.clear();
+            buffer.asFloatBuffer().put(values, offset, length);
+            buffer.limit(length * Float.BYTES);
+            writeFully(channel, buffer);
+        }
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values, int count) throws IOException {
+        int perBuffer = buffer.capacity() / Integer.BYTES;
+        for (int offset = 0; offset < count; offset += perBuffer) {
+            int length = Math.min(perBuffer, count - offset);
+            buffer.clear();
+            buffer.asIntBuffer().put(values, offset, length);
+            buffer.limit(length * Integer.BYTES);
+            writeFully(channel, buffer);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Кэш по-прежнему соответствует файлу - запоминаем новое время, чтобы не считать сумму снова.
+    // Не получилось (нет прав на запись) - не страшно, в следующий раз сумма посчитается ещё раз
+    private static void refreshStamp(Path cacheFile, int stampPosition, Source source) {
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.WRITE)) {
+            ByteBuffer stamp = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            stamp.putLong(source.modifiedMillis).flip();
+            channel.write(stamp, stampPosition + Long.BYTES);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static int checksum(Path path) throws IOException {
+        CRC32C checksum = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer.clear()) >= 0) {
+                checksum.update(buffer.flip());
+            }
+        }
+        return (int) checksum.getValue();
+    }
+
+    private static int align8(int position) {
+        return (position + 7) & ~7;
+    }
+}
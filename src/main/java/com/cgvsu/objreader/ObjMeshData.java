@@ -0,0 +1,209 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.GeometryStorage;
+import com.cgvsu.model.Model;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Результат разбора в плоских растущих массивах примитивов.
+// Грань f хранит свои углы в corner*[faceOffsets[f] .. faceOffsets[f + 1]);
+// отсутствующий индекс текстуры или нормали - -1.
+// Отрицательные (относительные) индексы OBJ разрешаются относительно элементов этого же
+// куска файла; такие углы запоминаются, чтобы при склейке кусков сдвинуть их на число
+// элементов в предыдущих кусках.
+final class ObjMeshData {
+    float[] positions = new float[3 * 1024];
+    int positionCount;
+    float[] textureCoordinates = new float[2 * 1024];
+    int textureCoordinateCount;
+    float[] normals = new float[3 * 1024];
+    int normalCount;
+
+    int[] faceOffsets = new int[1024 + 1];
+    byte[] faceFlags = new byte[1024];
+    int faceCount;
+    int[] cornerVertices = new int[4 * 1024];
+    int[] cornerTextureVertices = new int[4 * 1024];
+    int[] cornerNormals = new int[4 * 1024];
+    int cornerCount;
+
+    // Нарушения, пропущенные при нестрогом разборе
+    ObjDiagnostics diagnostics = new ObjDiagnostics();
+
+    // Углы с относительными индексами: (номер угла << 2) | RELATIVE_*, по возрастанию номера угла
+    int[] relativeCorners = new int[16];
+    int relativeCornerCount;
+
+    static final byte FACE_HAS_TEXTURE = 1;
+    static final byte FACE_HAS_NORMALS = 2;
+
+    static final int RELATIVE_VERTEX = 0;
+    static final int RELATIVE_TEXTURE = 1;
+    static final int RELATIVE_NORMAL = 2;
+
+    void addPosition(float x, float y, float z) {
+        if ((positionCount + 1) * 3 > positions.length) {
+            positions = Arrays.copyOf(positions, positions.length * 2);
+        }
+        positions[positionCount * 3] = x;
+        positions[positionCount * 3 + 1] = y;
+        positions[positionCount * 3 + 2] = z;
+        positionCount++;
+    }
+
+    void addTextureCoordinate(float u, float v) {
+        if ((textureCoordinateCount + 1) * 2 > textureCoordinates.length) {
+            textureCoordinates = Arrays.copyOf(textureCoordinates, textureCoordinates.length * 2);
+        }
+        textureCoordinates[textureCoordinateCount * 2] = u;
+        textureCoordinates[textureCoordinateCount * 2 + 1] = v;
+        textureCoordinateCount++;
+    }
+
+    void addNormal(float x, float y, float z) {
+        if ((normalCount + 1) * 3 > normals.length) {
+            normals = Arrays.copyOf(normals, normals.length * 2);
+        }
+        normals[normalCount * 3] = x;
+        normals[normalCount * 3 + 1] = y;
+        normals[normalCount * 3 + 2] = z;
+        normalCount++;
+    }
+
+    // Угол текущей (ещё не закрытой) грани
+    void addCorner(int vertex, int textureVertex, int normal) {
+        if (cornerCount == cornerVertices.length) {
+            int capacity = cornerVertices.length * 2;
+            cornerVertices = Arrays.copyOf(cornerVertices, capacity);
+            cornerTextureVertices = Arrays.copyOf(cornerTextureVertices, capacity);
+            cornerNormals = Arrays.copyOf(cornerNormals, capacity);
+        }
+        cornerVertices[cornerCount] = vertex;
+        cornerTextureVertices[cornerCount] = textureVertex;
+        cornerNormals[cornerCount] = normal;
+        cornerCount++;
+    }
+
+    // Индекс угла corner был задан относительно (kind - RELATIVE_*)
+    void markRelative(int corner, int kind) {
+        if (relativeCornerCount == relativeCorners.length) {
+            relativeCorners = Arrays.copyOf(relativeCorners, relativeCornerCount * 2);
+        }
+        relativeCorners[relativeCornerCount++] = (corner << 2) | kind;
+    }
+
+    // Закрывает грань из углов, добавленных после предыдущей грани
+    void closeFace(byte flags) {
+        if (faceCount == faceFlags.length) {
+            faceFlags = Arrays.copyOf(faceFlags, faceCount * 2);
+            faceOffsets = Arrays.copyOf(faceOffsets, faceCount * 2 + 1);
+        }
+        faceFlags[faceCount] = flags;
+        faceCount++;
+        faceOffsets[faceCount] = cornerCount;
+    }
+
+    // Отменяет углы незакрытой грани
+    void discardFace() {
+        cornerCount = faceOffsets[faceCount];
+        while (relativeCornerCount > 0 && (relativeCorners[relativeCornerCount - 1] >>> 2) >= cornerCount) {
+            relativeCornerCount--;
+        }
+    }
+
+    int openFaceCorners() {
+        return cornerCount - faceOffsets[faceCount];
+    }
+
+    // Склейка кусков файла в порядке следования. Положительные индексы в OBJ глобальные и
+    // не меняются; относительные сдвигаются на число элементов в предыдущих кусках.
+    static ObjMeshData merge(List<ObjMeshData> parts) {
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+
+        ObjMeshData merged = new ObjMeshData();
+        int positions = 0, textureCoordinates = 0, normals = 0, faces = 0, corners = 0;
+        for (ObjMeshData part : parts) {
+            positions += part.positionCount;
+            textureCoordinates += part.textureCoordinateCount;
+            normals += part.normalCount;
+            faces += part.faceCount;
+            corners += part.cornerCount;
+        }
+        merged.positions = new float[Math.max(3, positions * 3)];
+        merged.textureCoordinates = new float[Math.max(2, textureCoordinates * 2)];
+        merged.normals = new float[Math.max(3, normals * 3)];
+        merged.faceOffsets = new int[faces + 1];
+        merged.faceFlags = new byte[Math.max(1, faces)];
+        merged.cornerVertices = new int[Math.max(1, corners)];
+        merged.cornerTextureVertices = new int[Math.max(1, corners)];
+        merged.cornerNormals = new int[Math.max(1, corners)];
+
+        for (ObjMeshData part : parts) {
+            int firstCorner = merged.cornerCount;
+            System.arraycopy(part.positions, 0, merged.positions, merged.positionCount * 3, part.positionCount * 3);
+            System.arraycopy(part.textureCoordinates, 0, merged.textureCoordinates,
+                    merged.textureCoordinateCount * 2, part.textureCoordinateCount * 2);
+            System.arraycopy(part.normals, 0, merged.normals, merged.normalCount * 3, part.normalCount * 3);
+            System.arraycopy(part.faceFlags, 0, merged.faceFlags, merged.faceCount, part.faceCount);
+            for (int f = 1; f <= part.faceCount; f++) {
+                merged.faceOffsets[merged.faceCount + f] = firstCorner + part.faceOffsets[f];
+            }
+            System.arraycopy(part.cornerVertices, 0, merged.cornerVertices, firstCorner, part.cornerCount);
+            System.arraycopy(part.cornerTextureVertices, 0, merged.cornerTextureVertices, firstCorner, part.cornerCount);
+            System.arraycopy(part.cornerNormals, 0, merged.cornerNormals, firstCorner, part.cornerCount);
+
+            for (int i = 0; i < part.relativeCornerCount; i++) {
+                int corner = firstCorner + (part.relativeCorners[i] >>> 2);
+                switch (part.relativeCorners[i] & 3) {
+                    case RELATIVE_VERTEX -> merged.cornerVertices[corner] += merged.positionCount;
+                    case RELATIVE_TEXTURE -> merged.cornerTextureVertices[corner] += merged.textureCoordinateCount;
+                    default -> merged.cornerNormals[corner] += merged.normalCount;
+                }
+            }
+
+            merged.positionCount += part.positionCount;
+            merged.textureCoordinateCount += part.textureCoordinateCount;
+            merged.normalCount += part.normalCount;
+            merged.faceCount += part.faceCount;
+            merged.cornerCount += part.cornerCount;
+        }
+        return merged;
+    }
+
+    // Приводит индексы текстур и нормалей к виду Model: у грани они либо все неотрицательные,
+    // либо все -1 (и флаг снят). Вызывается после склейки кусков, когда относительные индексы
+    // уже разрешены: после несогласованной грани или пропущенного индекса ("1/") в углах
+    // могут остаться отдельные значения.
+    void normalizeAttributes() {
+        for (int f = 0; f < faceCount; f++) {
+            faceFlags[f] = (byte) (normalizeAttribute(cornerTextureVertices, f, FACE_HAS_TEXTURE)
+                    | normalizeAttribute(cornerNormals, f, FACE_HAS_NORMALS));
+        }
+    }
+
+    private byte normalizeAttribute(int[] values, int face, byte flag) {
+        int from = faceOffsets[face];
+        int to = faceOffsets[face + 1];
+        boolean complete = (faceFlags[face] & flag) != 0;
+        for (int i = from; complete && i < to; i++) {
+            complete = values[i] >= 0;
+        }
+        if (!complete) {
+            Arrays.fill(values, from, to, -1);
+        }
+        return complete ? flag : 0;
+    }
+
+    // Массивы передаются в модель целиком, без объекта на вершину или полигон
+    Model toModel(GeometryStorage storage) {
+        Model model = new Model(storage);
+        model.addVertices(positions, positionCount);
+        model.addTextureVertices(textureCoordinates, textureCoordinateCount);
+        model.addNormals(normals, normalCount);
+        model.addPolygons(faceOffsets, cornerVertices, cornerTextureVertices, cornerNormals, faceCount);
+        return model;
+    }
+}
@@ -0,0 +1,163 @@
+package com.cgvsu.objreader;
+
+import java.nio.charset.StandardCharsets;
+
+// Разбор чисел прямо из байтов строки без создания String.
+// Быстрый путь покрывает обычную запись чисел в OBJ; всё остальное (hex, NaN, суффиксы,
+// слишком длинные мантиссы, ошибки) отдаётся Float.parseFloat / Integer.parseInt,
+// поэтому результат и исключения совпадают со стандартными методами.
+final class ObjNumberParser {
+    // Десятичная мантисса до 18 цифр помещается в long без переполнения
+    private static final int MAX_MANTISSA_DIGITS = 18;
+    // Степени 10 до 22 представимы в double точно
+    private static final int MAX_EXACT_POWER = 22;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_POWER + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+        for (int i = 1; i <= MAX_EXACT_POWER; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+        }
+    }
+
+    private ObjNumberParser() {
+    }
+
+    // Формат быстрого пути: [+-]? цифры [. цифры] ([eE] [+-]? цифры)?
+    // Значение m * 10^e при m <= 2^53 и |e| <= 22 считается в double с одним округлением
+    // (алгоритм Клингера). Округление этого double до float совпадает с прямым округлением
+    // десятичного числа, если double не попал ровно в середину между соседними float:
+    // такие середины представимы в double, и округление не может "перескочить" через них.
+    static float parseFloat(byte[] bytes, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+
+        for (; i < end && isDigit(bytes[i]); i++) {
+            anyDigit = true;
+            int digit = bytes[i] - '0';
+            if (mantissa == 0 && digit == 0) {
+                continue;
+            }
+            if (digits == MAX_MANTISSA_DIGITS) {
+                return fallbackFloat(bytes, start, end);
+            }
+            mantissa = mantissa * 10 + digit;
+            digits++;
+        }
+        if (i < end && bytes[i] == '.') {
+            for (i++; i < end && isDigit(bytes[i]); i++) {
+                anyDigit = true;
+                int digit = bytes[i] - '0';
+                if (mantissa == 0 && digit == 0) {
+                    exponent--;
+                    continue;
+                }
+                if (digits == MAX_MANTISSA_DIGITS) {
+                    return fallbackFloat(bytes, start, end);
+                }
+                mantissa = mantissa * 10 + digit;
+                digits++;
+                exponent--;
+            }
+        }
+        if (!anyDigit) {
+            return fallbackFloat(bytes, start, end);
+        }
+
+        if (i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExponent = bytes[i] == '-';
+                i++;
+            }
+            int exponentStart = i;
+            int explicitExponent = 0;
+            for (; i < end && isDigit(bytes[i]); i++) {
+                if (explicitExponent > 1000) {
+                    return fallbackFloat(bytes, start, end);
+                }
+                explicitExponent = explicitExponent * 10 + (bytes[i] - '0');
+            }
+            if (i == exponentStart) {
+                return fallbackFloat(bytes, start, end);
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != end) {
+            return fallbackFloat(bytes, start, end);
+        }
+
+        if (mantissa == 0) {
+            return negative ? -0.0f : 0.0f;
+        }
+        if (mantissa > MAX_EXACT_MANTISSA || exponent < -MAX_EXACT_POWER || exponent > MAX_EXACT_POWER) {
+            return fallbackFloat(bytes, start, end);
+        }
+
+        double value = exponent >= 0
+                ? mantissa * POWERS_OF_TEN[exponent]
+                : mantissa / POWERS_OF_TEN[-exponent];
+        float result = (float) value;
+        if (isFloatMidpoint(value, result)) {
+            return fallbackFloat(bytes, start, end);
+        }
+        return negative ? -result : result;
+    }
+
+    // Формат быстрого пути: [+-]? не более 9 цифр - переполнение невозможно
+    static int parseInt(byte[] bytes, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        if (i == end || end - i > 9) {
+            return fallbackInt(bytes, start, end);
+        }
+
+        int value = 0;
+        for (; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return fallbackInt(bytes, start, end);
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean isFloatMidpoint(double value, float rounded) {
+        if (Float.isInfinite(rounded)) {
+            return true;
+        }
+        if (rounded == value) {
+            return false;
+        }
+        float neighbour = value > rounded ? Math.nextUp(rounded) : Math.nextDown(rounded);
+        return value == ((double) rounded + (double) neighbour) * 0.5;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static float fallbackFloat(byte[] bytes, int start, int end) {
+        return Float.parseFloat(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+    }
+
+    private static int fallbackInt(byte[] bytes, int start, int end) {
+        return Integer.parseInt(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,9 @@
+package com.cgvsu.objreader;
+
+// Что делать с нарушениями из ObjIssue
+public enum ObjParsePolicy {
+    // Пропустить проблемную грань или угол, учесть в ObjDiagnostics и читать дальше
+    LENIENT,
+    // Первое же нарушение - ObjReaderException с номером строки
+    STRICT
+}
@@ -0,0 +1,31 @@
+package com.cgvsu.objreader;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Общий счётчик разобранных байтов для всех кусков файла
+final class ObjProgressCounter {
+    // Прогресс сообщается и отмена проверяется раз в столько строк
+    static final int LINE_INTERVAL_MASK = (1 << 12) - 1;
+
+    private final ObjReadProgress progress;
+    private final long totalBytes;
+    private final AtomicLong parsedBytes = new AtomicLong();
+
+    ObjProgressCounter(ObjReadProgress progress, long totalBytes) {
+        this.progress = progress;
+        this.totalBytes = totalBytes;
+    }
+
+    void advance(long bytes) {
+        if (bytes > 0) {
+            progress.update(parsedBytes.addAndGet(bytes), totalBytes);
+        }
+    }
+
+    void checkCancelled() {
+        if (progress.isCancelled()) {
+            throw new CancellationException("Model loading cancelled");
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.cgvsu.objreader;
+
+// Наблюдатель за чтением файла: сколько байтов уже разобрано и не отменена ли загрузка.
+// Методы вызываются из потоков разбора, при параллельном разборе - из нескольких сразу.
+// Отменённое чтение прерывается с java.util.concurrent.CancellationException.
+public interface ObjReadProgress {
+    ObjReadProgress NONE = (parsedBytes, totalBytes) -> {
+    };
+
+    // totalBytes - размер входа или -1, если он неизвестен
+    void update(long parsedBytes, long totalBytes);
+
+    default boolean isCancelled() {
+        return false;
+    }
+}
@@ -0,0 +1,17 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.Model;
+
+// Модель вместе со сводкой нарушений, пропущенных при разборе
+public final class ObjReadResult {
+    private final Model model;
+    private final ObjDiagnostics diagnostics;
+
+    ObjReadResult(Model model, ObjDiagnostics diagnostics) {
+        this.model = model;
+        this.diagnostics = diagnostics;
+    }
+
+    public Model getModel() { return model; }
+    public ObjDiagnostics getDiagnostics() { return diagnostics; }
+}
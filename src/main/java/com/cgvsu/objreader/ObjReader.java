@@ -1,279 +1,193 @@
 package com.cgvsu.objreader;
 
-import com.cgvsu.math.Vector2f;
-import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.GeometryStorage;
 import com.cgvsu.model.Model;
-import com.cgvsu.model.Polygon;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Scanner;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+// Методы read* возвращают только модель: разбор нестрогий, а сводка пропущенных нарушений
+// (если они были) печатается в System.err одним сообщением после разбора.
+// Методы load* возвращают модель вместе со сводкой и принимают политику ObjParsePolicy.
 public class ObjReader {
-    private static final String OBJ_VERTEX_TOKEN = "v";
-    private static final String OBJ_TEXTURE_TOKEN = "vt";
-    private static final String OBJ_NORMAL_TOKEN = "vn";
-    private static final String OBJ_FACE_TOKEN = "f";
-    private static final String OBJ_COMMENT_TOKEN = "#";
-    private static final String OBJ_OBJECT_TOKEN = "o";
-    private static final String OBJ_GROUP_TOKEN = "g";
-
     public static Model read(String fileContent) {
         if (fileContent == null || fileContent.trim().isEmpty()) {
             throw new ObjReaderException("File content is empty", 0);
         }
 
-        Model model = new Model();
-        int lineNumber = 0;
-
-        try (Scanner scanner = new Scanner(fileContent)) {
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine().trim();
-                lineNumber++;
-
-                // Пропускаем пустые строки и комментарии
-                if (line.isEmpty() || line.startsWith(OBJ_COMMENT_TOKEN)) {
-                    continue;
-                }
-
-                List<String> tokens = splitLine(line);
-                if (tokens.isEmpty()) {
-                    continue;
-                }
-
-                String tokenType = tokens.get(0);
-                tokens.remove(0);
-
-                switch (tokenType) {
-                    case OBJ_VERTEX_TOKEN:
-                        parseVertex(tokens, lineNumber, model);
-                        break;
-                    case OBJ_TEXTURE_TOKEN:
-                        parseTextureVertex(tokens, lineNumber, model);
-                        break;
-                    case OBJ_NORMAL_TOKEN:
-                        parseNormal(tokens, lineNumber, model);
-                        break;
-                    case OBJ_FACE_TOKEN:
-                        parseFace(tokens, lineNumber, model);
-                        break;
-                    case OBJ_OBJECT_TOKEN:
-                    case OBJ_GROUP_TOKEN:
-                        // Игнорируем объекты и группы для простоты
-                        break;
-                    default:
-                        // Игнорируем неизвестные токены
-                        break;
-                }
-            }
+        try {
+            return read(new ByteArrayInputStream(fileContent.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            // Чтение из массива в памяти не бросает IOException
+            throw new UncheckedIOException(e);
         }
-
-        return model;
     }
 
-    private static List<String> splitLine(String line) {
-        // Разделяем строку, но сохраняем пустые токены для формата "f v1//vn1"
-        List<String> tokens = new ArrayList<>();
-        StringBuilder currentToken = new StringBuilder();
-        boolean inSlash = false;
-
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-
-            if (Character.isWhitespace(c)) {
-                if (currentToken.length() > 0) {
-                    tokens.add(currentToken.toString());
-                    currentToken.setLength(0);
-                }
-                inSlash = false;
-            } else if (c == '/') {
-                currentToken.append(c);
-                inSlash = true;
-            } else {
-                currentToken.append(c);
-                inSlash = false;
-            }
-        }
-
-        if (currentToken.length() > 0) {
-            tokens.add(currentToken.toString());
+    // Чтение файла потоком: в памяти одновременно только буфер чтения и уже собранная модель
+    public static Model read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel);
         }
-
-        return tokens;
     }
 
-    private static void parseVertex(List<String> tokens, int lineNumber, Model model) {
-        if (tokens.size() < 3) {
-            throw new ObjReaderException("Vertex requires at least 3 coordinates", lineNumber);
-        }
-
-        try {
-            float x = Float.parseFloat(tokens.get(0));
-            float y = Float.parseFloat(tokens.get(1));
-            float z = Float.parseFloat(tokens.get(2));
-
-            model.addVertex(new Vector3f(x, y, z));
-        } catch (NumberFormatException e) {
-            throw new ObjReaderException("Invalid number format for vertex: " + e.getMessage(), lineNumber);
-        }
+    // Большой файл разбирается по кускам параллельно в общем пуле; результат, сводка
+    // и ошибки те же, что у read(Path)
+    public static Model readParallel(Path path) throws IOException {
+        return readParallel(path, ForkJoinPool.commonPool());
     }
 
-    private static void parseTextureVertex(List<String> tokens, int lineNumber, Model model) {
-        if (tokens.size() < 2) {
-            throw new ObjReaderException("Texture vertex requires at least 2 coordinates", lineNumber);
-        }
-
-        try {
-            float u = Float.parseFloat(tokens.get(0));
-            float v = Float.parseFloat(tokens.get(1));
-
-            model.addTextureVertex(new Vector2f(u, v));
-        } catch (NumberFormatException e) {
-            throw new ObjReaderException("Invalid number format for texture vertex: " + e.getMessage(), lineNumber);
-        }
+    public static Model readParallel(Path path, ForkJoinPool pool) throws IOException {
+        return printDiagnostics(loadParallel(path, pool, ObjParsePolicy.LENIENT, ObjReadProgress.NONE));
     }
 
-    private static void parseNormal(List<String> tokens, int lineNumber, Model model) {
-        if (tokens.size() < 3) {
-            throw new ObjReaderException("Normal requires 3 coordinates", lineNumber);
-        }
+    public static Model readCached(Path path, Path cacheDirectory) throws IOException {
+        return printDiagnostics(loadCached(path, cacheDirectory, ObjParsePolicy.LENIENT, ObjReadProgress.NONE));
+    }
 
-        try {
-            float x = Float.parseFloat(tokens.get(0));
-            float y = Float.parseFloat(tokens.get(1));
-            float z = Float.parseFloat(tokens.get(2));
+    // Поток не закрывается - за это отвечает вызывающий код
+    public static Model read(InputStream inputStream) throws IOException {
+        return read(Channels.newChannel(inputStream));
+    }
 
-            model.addNormal(new Vector3f(x, y, z));
-        } catch (NumberFormatException e) {
-            throw new ObjReaderException("Invalid number format for normal: " + e.getMessage(), lineNumber);
-        }
+    // Канал не закрывается - за это отвечает вызывающий код
+    public static Model read(ReadableByteChannel channel) throws IOException {
+        return printDiagnostics(load(channel, ObjParsePolicy.LENIENT));
     }
 
-    private static void parseFace(List<String> tokens, int lineNumber, Model model) {
-        if (tokens.isEmpty()) {
-            // Некоторые файлы могут содержать пустые полигоны - пропускаем их
-            return;
-        }
+    // Канал не закрывается - за это отвечает вызывающий код
+    public static ObjReadResult load(ReadableByteChannel channel, ObjParsePolicy policy) throws IOException {
+        return buildResult(parse(channel, policy, new ObjProgressCounter(ObjReadProgress.NONE, -1)),
+                GeometryStorage.HEAP);
+    }
 
-        if (tokens.size() < 3) {
-            System.err.println("Warning: Skipping face with less than 3 vertices at line " + lineNumber);
-            return;
+    // progress получает число разобранных байтов файла и может отменить загрузку
+    // (тогда бросается java.util.concurrent.CancellationException)
+    public static ObjReadResult loadParallel(Path path, ForkJoinPool pool, ObjParsePolicy policy,
+                                             ObjReadProgress progress) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ObjProgressCounter counter = new ObjProgressCounter(progress, channel.size());
+            ObjMeshData mesh = ParallelObjReader.parse(channel, pool, policy, counter);
+            counter.checkCancelled();
+            return buildResult(mesh, GeometryStorage.HEAP);
         }
+    }
 
-        List<Integer> vertexIndices = new ArrayList<>();
-        List<Integer> textureIndices = new ArrayList<>();
-        List<Integer> normalIndices = new ArrayList<>();
-
-        for (String token : tokens) {
-            if (token.trim().isEmpty()) {
-                continue; // Пропускаем пустые токены
-            }
+    // Повторные загрузки того же файла идут из двоичного кэша (ObjMeshCache) без разбора текста;
+    // сводка нарушений хранится в кэше вместе с геометрией.
+    // Кэш пишется после первого разбора рядом с файлом (model.obj.mesh) или, если задан
+    // cacheDirectory, в этот каталог; устаревший кэш определяется и перезаписывается сам.
+    // Не удалось записать кэш - модель всё равно возвращается, кэш просто не создаётся.
+    public static ObjReadResult loadCached(Path path, Path cacheDirectory, ObjParsePolicy policy,
+                                           ObjReadProgress progress) throws IOException {
+        return loadCached(path, cacheDirectory, policy, progress, GeometryStorage.HEAP);
+    }
 
-            try {
-                parseFaceVertex(token, vertexIndices, textureIndices, normalIndices, lineNumber);
-            } catch (ObjReaderException e) {
-                // Пропускаем проблемные вершины, но продолжаем обработку
-                System.err.println("Warning: " + e.getMessage());
+    // С GeometryStorage.OFF_HEAP модель строится прямо поверх отображённого файла кэша и кучу
+    // не занимает. При первой загрузке массивы разбора временно лежат в куче, пока не записан кэш;
+    // если записать его не удалось, геометрия копируется в прямые буферы.
+    public static ObjReadResult loadCached(Path path, Path cacheDirectory, ObjParsePolicy policy,
+                                           ObjReadProgress progress, GeometryStorage storage) throws IOException {
+        ObjMeshCache.Source source = ObjMeshCache.Source.of(path);
+        Path cacheFile = ObjMeshCache.locate(source, cacheDirectory);
+
+        ObjProgressCounter counter = new ObjProgressCounter(progress, source.size);
+        ObjReadResult cached = loadFromCache(cacheFile, source, storage);
+        if (cached != null) {
+            // Строгий режим по кэшу нестрогого разбора: первое нарушение файла - та же ошибка,
+            // что дал бы разбор текста
+            if (policy == ObjParsePolicy.STRICT && !cached.getDiagnostics().isEmpty()) {
+                ObjDiagnostics.Example first = cached.getDiagnostics().getExamples().get(0);
+                throw new ObjReaderException(first.getMessage(), first.getLineNumber());
             }
+            counter.advance(source.size);
+            counter.checkCancelled();
+            return buildResult(cached.getModel(), cached.getDiagnostics());
         }
 
-        if (vertexIndices.size() < 3) {
-            System.err.println("Warning: Skipping face with less than 3 valid vertices at line " + lineNumber);
-            return;
-        }
-
-        // Проверяем согласованность индексов
-        if (!textureIndices.isEmpty() && textureIndices.size() != vertexIndices.size()) {
-            System.err.println("Warning: Mismatched vertex/texture indices at line " + lineNumber);
-            textureIndices.clear();
+        ObjMeshData mesh;
+        try (FileChannel channel = FileChannel.open(source.path, StandardOpenOption.READ)) {
+            mesh = ParallelObjReader.parse(channel, ForkJoinPool.commonPool(), policy, counter);
         }
-
-        if (!normalIndices.isEmpty() && normalIndices.size() != vertexIndices.size()) {
-            System.err.println("Warning: Mismatched vertex/normal indices at line " + lineNumber);
-            normalIndices.clear();
-        }
-
-        Polygon polygon = new Polygon();
-        polygon.setVertexIndices(vertexIndices);
-
-        if (!textureIndices.isEmpty()) {
-            polygon.setTextureVertexIndices(textureIndices);
+        // Отмена после разбора: кэш не пишется, модель не строится
+        counter.checkCancelled();
+        try {
+            ObjMeshCache.store(cacheFile, mesh, source);
+        } catch (IOException exception) {
+            System.err.println("Warning: Cannot write mesh cache " + cacheFile + ": " + exception.getMessage());
         }
 
-        if (!normalIndices.isEmpty()) {
-            polygon.setNormalIndices(normalIndices);
+        if (storage == GeometryStorage.OFF_HEAP) {
+            // Только что записанный кэш сразу отображается - массивы разбора больше не нужны
+            cached = ObjMeshCache.loadMapped(cacheFile, source);
+            if (cached != null) {
+                return buildResult(cached.getModel(), cached.getDiagnostics());
+            }
         }
-
-        model.addPolygon(polygon);
+        return buildResult(mesh, storage);
     }
 
-    private static void parseFaceVertex(String token,
-                                        List<Integer> vertexIndices,
-                                        List<Integer> textureIndices,
-                                        List<Integer> normalIndices,
-                                        int lineNumber) {
-        if (token == null || token.trim().isEmpty()) {
-            throw new ObjReaderException("Empty face vertex token at line " + lineNumber, lineNumber);
+    private static ObjReadResult loadFromCache(Path cacheFile, ObjMeshCache.Source source,
+                                               GeometryStorage storage) throws IOException {
+        if (storage == GeometryStorage.OFF_HEAP) {
+            return ObjMeshCache.loadMapped(cacheFile, source);
         }
+        ObjMeshData mesh = ObjMeshCache.load(cacheFile, source);
+        return mesh != null ? new ObjReadResult(mesh.toModel(storage), mesh.diagnostics) : null;
+    }
 
-        // Убираем лишние пробелы
-        token = token.trim();
-
-        // Разделяем по "/", но сохраняем пустые элементы
-        String[] parts = token.split("/", -1); // -1 сохраняет пустые элементы
-
-        if (parts.length == 0 || parts[0].isEmpty()) {
-            throw new ObjReaderException("Missing vertex index in face: " + token, lineNumber);
-        }
-
-        try {
-            // Индекс вершины (обязательный)
-            int vertexIndex = parseIndex(parts[0], lineNumber, "vertex");
-            vertexIndices.add(vertexIndex);
-
-            // Текстурные координаты (опциональные)
-            if (parts.length > 1 && !parts[1].isEmpty()) {
-                int textureIndex = parseIndex(parts[1], lineNumber, "texture");
-                textureIndices.add(textureIndex);
-            } else if (parts.length > 1 && textureIndices.size() > 0) {
-                // Если есть предыдущие текстурные координаты, но текущая отсутствует
-                // добавляем -1 как маркер отсутствия
-                textureIndices.add(-1);
-            }
-
-            // Нормали (опциональные)
-            if (parts.length > 2 && !parts[2].isEmpty()) {
-                int normalIndex = parseIndex(parts[2], lineNumber, "normal");
-                normalIndices.add(normalIndex);
-            } else if (parts.length > 2 && normalIndices.size() > 0) {
-                // Если есть предыдущие нормали, но текущая отсутствует
-                normalIndices.add(-1);
+    static ObjMeshData parse(ReadableByteChannel channel, ObjParsePolicy policy,
+                             ObjProgressCounter progress) throws IOException {
+        ObjLineReader reader = new ObjLineReader(channel);
+        ObjLineParser parser = new ObjLineParser(policy);
+        ObjMeshData mesh = new ObjMeshData();
+        boolean hasContent = false;
+        long reportedBytes = 0;
+
+        // Строки разбираются прямо в буфере чтения, без String на строку или токен
+        while (reader.nextLine()) {
+            hasContent |= parser.parseLine(reader.getBuffer(), reader.getLineStart(), reader.getLineEnd(),
+                    reader.getLineNumber(), mesh);
+            if ((reader.getLineNumber() & ObjProgressCounter.LINE_INTERVAL_MASK) == 0) {
+                progress.checkCancelled();
+                progress.advance(reader.getBytesRead() - reportedBytes);
+                reportedBytes = reader.getBytesRead();
             }
+        }
+        progress.advance(reader.getBytesRead() - reportedBytes);
 
-        } catch (NumberFormatException e) {
-            throw new ObjReaderException("Invalid face index format: " + token + " - " + e.getMessage(), lineNumber);
+        if (!hasContent) {
+            throw new ObjReaderException("File content is empty", 0);
         }
+        mesh.normalizeAttributes();
+        return mesh;
     }
 
-    private static int parseIndex(String indexStr, int lineNumber, String type) {
-        if (indexStr == null || indexStr.trim().isEmpty()) {
-            throw new NumberFormatException("Empty " + type + " index");
-        }
+    private static ObjReadResult buildResult(ObjMeshData mesh, GeometryStorage storage) {
+        return buildResult(mesh.toModel(storage), mesh.diagnostics);
+    }
 
-        int index = Integer.parseInt(indexStr.trim());
+    private static ObjReadResult buildResult(Model model, ObjDiagnostics diagnostics) {
+        // Триангуляция и разбиение на кластеры один раз при загрузке, а не на каждом кадре
+        model.getTriangles();
+        model.getClusters();
 
-        if (index == 0) {
-            throw new NumberFormatException("Zero " + type + " index (OBJ indices start from 1)");
-        }
+        return new ObjReadResult(model, diagnostics);
+    }
 
-        // OBJ поддерживает отрицательные индексы (относительные)
-        if (index < 0) {
-            // Возвращаем как есть, обработка будет позже
-            return index;
+    // Одна запись в консоль на весь файл вместо строки на каждое нарушение
+    private static Model printDiagnostics(ObjReadResult result) {
+        if (!result.getDiagnostics().isEmpty()) {
+            System.err.println("Warning: " + result.getDiagnostics().getReport());
         }
-
-        // Преобразуем в 0-based индекс
-        return index - 1;
+        return result.getModel();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,157 @@
+package com.cgvsu.objreader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// Параллельный разбор файла: он режется на куски по границам строк, куски разбираются
+// независимо в пуле, затем склеиваются в порядке следования (ObjMeshData.merge).
+// Номер первой строки куска при разборе неизвестен: строки сводки нарушений сдвигаются
+// при склейке, а кусок с ошибкой разбирается ещё раз последовательно, уже с верными
+// номерами строк. Так сводка и первая ошибка совпадают с последовательным разбором.
+final class ParallelObjReader {
+    // Меньше этого размера куска параллелить невыгодно
+    static final long MIN_CHUNK_SIZE = 1 << 20;
+    // Кусков больше, чем потоков, чтобы потоки не простаивали из-за неравных кусков
+    private static final int CHUNKS_PER_WORKER = 4;
+    private static final int SCAN_BUFFER_SIZE = 1 << 12;
+
+    private ParallelObjReader() {
+    }
+
+    private static final class Chunk {
+        final long start;
+        final long end;
+        ObjMeshData mesh;
+        int lineCount;
+        boolean hasContent;
+        Exception failure;
+
+        Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    static ObjMeshData parse(FileChannel file, ForkJoinPool pool, ObjParsePolicy policy,
+                             ObjProgressCounter counter) throws IOException {
+        long size = file.size();
+        int chunkCount = (int) Math.min(size / MIN_CHUNK_SIZE, (long) pool.getParallelism() * CHUNKS_PER_WORKER);
+        if (chunkCount < 2 || pool.getParallelism() < 2) {
+            return ObjReader.parse(file, policy, counter);
+        }
+
+        long[] bounds = splitAtLines(file, size, chunkCount);
+        Chunk[] chunks = new Chunk[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            chunks[i] = new Chunk(bounds[i], bounds[i + 1]);
+        }
+
+        pool.submit(() -> IntStream.range(0, chunkCount).parallel().forEach(i -> {
+            Chunk chunk = chunks[i];
+            try {
+                parse(file, chunk, 0, policy, counter);
+            } catch (IOException | RuntimeException exception) {
+                chunk.failure = exception;
+            }
+        })).join();
+        counter.checkCancelled();
+
+        // Повтор по порядку: первая по файлу ошибка бросается.
+        // Байты этих кусков уже учтены, при повторе прогресс не сообщается
+        ObjProgressCounter replayCounter = new ObjProgressCounter(ObjReadProgress.NONE, size);
+        boolean hasContent = false;
+        int firstLineNumber = 0;
+        List<ObjMeshData> parts = new ArrayList<>(chunkCount);
+        ObjDiagnostics diagnostics = new ObjDiagnostics();
+        for (Chunk chunk : chunks) {
+            if (chunk.failure != null) {
+                parse(file, chunk, firstLineNumber, policy, replayCounter);
+                diagnostics.append(chunk.mesh.diagnostics, 0);
+            } else {
+                diagnostics.append(chunk.mesh.diagnostics, firstLineNumber);
+            }
+            hasContent |= chunk.hasContent;
+            firstLineNumber += chunk.lineCount;
+            parts.add(chunk.mesh);
+        }
+
+        if (!hasContent) {
+            throw new ObjReaderException("File content is empty", 0);
+        }
+
+        ObjMeshData merged = ObjMeshData.merge(parts);
+        merged.diagnostics = diagnostics;
+        merged.normalizeAttributes();
+        return merged;
+    }
+
+    private static void parse(FileChannel file, Chunk chunk, int firstLineNumber,
+                              ObjParsePolicy policy, ObjProgressCounter progress) throws IOException {
+        ObjLineReader reader = new ObjLineReader(new ObjFileRegion(file, chunk.start, chunk.end));
+        ObjLineParser parser = new ObjLineParser(policy);
+        ObjMeshData mesh = new ObjMeshData();
+        boolean hasContent = false;
+        long reportedBytes = 0;
+
+        while (reader.nextLine()) {
+            hasContent |= parser.parseLine(reader.getBuffer(), reader.getLineStart(), reader.getLineEnd(),
+                    firstLineNumber + reader.getLineNumber(), mesh);
+            if ((reader.getLineNumber() & ObjProgressCounter.LINE_INTERVAL_MASK) == 0) {
+                progress.checkCancelled();
+                progress.advance(reader.getBytesRead() - reportedBytes);
+                reportedBytes = reader.getBytesRead();
+            }
+        }
+        progress.advance(reader.getBytesRead() - reportedBytes);
+
+        chunk.mesh = mesh;
+        chunk.lineCount = reader.getLineNumber();
+        chunk.hasContent = hasContent;
+    }
+
+    // Границы кусков: chunkCount + 1 смещений, каждое - начало строки (или конец файла)
+    private static long[] splitAtLines(FileChannel file, long size, int chunkCount) throws IOException {
+        long[] bounds = new long[chunkCount + 1];
+        ByteBuffer scan = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        for (int i = 1; i < chunkCount; i++) {
+            long nominal = size / chunkCount * i;
+            bounds[i] = nextLineStart(file, size, Math.max(nominal, bounds[i - 1]), scan);
+        }
+        bounds[chunkCount] = size;
+        return bounds;
+    }
+
+    // Первое начало строки не раньше from. Разделители те же, что у ObjLineReader:
+    // "\n", "\r\n" и одиночный "\r"; пара "\r\n" никогда не разрезается
+    private static long nextLineStart(FileChannel file, long size, long from, ByteBuffer scan) throws IOException {
+        if (from == 0) {
+            return 0;
+        }
+
+        long position = from - 1;
+        byte previous = 0;
+        boolean hasPrevious = false;
+        while (position < size) {
+            scan.clear();
+            int read = file.read(scan, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte current = scan.get(i);
+                if (hasPrevious && (previous == '\n' || (previous == '\r' && current != '\n'))) {
+                    return position + i;
+                }
+                previous = current;
+                hasPrevious = true;
+            }
+            position += read;
+        }
+        return size;
+    }
+}
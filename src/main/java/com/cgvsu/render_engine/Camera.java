@@ -11,6 +11,8 @@ public class Camera {
     private float nearPlane;
     private float farPlane;
     private final float defaultDistance;
+    // Увеличивается при любом изменении камеры - по нему определяется, нужно ли перерисовывать кадр
+    private long version;
 
     public Camera(Vector3f position, Vector3f target,
                   float fov, float aspectRatio,
@@ -24,9 +26,27 @@ public class Camera {
         this.defaultDistance = position.subtract(target).length();
     }
 
+    private Camera(Camera other) {
+        this.position = other.position;
+        this.target = other.target;
+        this.fov = other.fov;
+        this.aspectRatio = other.aspectRatio;
+        this.nearPlane = other.nearPlane;
+        this.farPlane = other.farPlane;
+        this.defaultDistance = other.defaultDistance;
+        this.version = other.version;
+    }
+
+    // Независимая копия текущего состояния для потока отрисовки.
+    // Vector3f внутри камеры не изменяются на месте, поэтому их можно разделять.
+    public Camera snapshot() {
+        return new Camera(this);
+    }
+
     public void move(Vector3f translation) {
         position = position.add(translation);
         target = target.add(translation);
+        version++;
     }
 
     public void orbit(float deltaX, float deltaY) {
@@ -48,6 +68,7 @@ public class Camera {
         float newZ = radius * (float) (Math.sin(phi) * Math.cos(theta));
 
         position = new Vector3f(newX, newY, newZ).add(target);
+        version++;
     }
 
     public void zoom(float delta) {
@@ -58,24 +79,40 @@ public class Camera {
         if (newDistance > defaultDistance * 5) newDistance = defaultDistance * 5;
 
         position = target.subtract(direction.multiply(newDistance));
+        version++;
     }
 
     public void setFov(float fov) {
-        this.fov = Math.max(0.1f, Math.min(3.0f, fov));
+        float clamped = Math.max(0.1f, Math.min(3.0f, fov));
+        // На границе диапазона значение не меняется - кадр перерисовывать не нужно
+        if (Float.compare(this.fov, clamped) != 0) {
+            this.fov = clamped;
+            version++;
+        }
     }
 
     public void reset() {
         Vector3f direction = target.subtract(position).normalize();
         position = target.subtract(direction.multiply(defaultDistance));
         fov = (float) Math.toRadians(60.0);
+        version++;
     }
 
     // Геттеры и сеттеры
     public Vector3f getPosition() { return position; }
     public Vector3f getTarget() { return target; }
     public float getFov() { return fov; }
+    public float getNearPlane() { return nearPlane; }
+    public float getFarPlane() { return farPlane; }
     public float getDistanceFromTarget() { return position.subtract(target).length(); }
-    public void setAspectRatio(float aspectRatio) { this.aspectRatio = aspectRatio; }
+    public long getVersion() { return version; }
+
+    public void setAspectRatio(float aspectRatio) {
+        if (Float.compare(this.aspectRatio, aspectRatio) != 0) {
+            this.aspectRatio = aspectRatio;
+            version++;
+        }
+    }
 
     public Matrix4f getViewMatrix() {
         return GraphicConveyor.lookAt(position, target);
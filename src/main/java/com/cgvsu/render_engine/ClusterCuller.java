@@ -0,0 +1,133 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.Matrix4f;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.TriangleClusters;
+
+// Отбраковка иерархии кластеров до обработки вершин: узел отбрасывается целиком,
+// если его AABB вне пирамиды видимости или если по конусу нормалей все его грани
+// повёрнуты в отбрасываемую режимом CullMode сторону.
+final class ClusterCuller {
+    private ClusterCuller() {
+    }
+
+    // Записывает номера видимых кластеров в output и возвращает их число
+    static int cull(TriangleClusters clusters, Matrix4f modelViewProjection, Vector3f eye,
+                    float nearPlane, float farPlane, CullMode cullMode,
+                    int[] output, FrameStatistics statistics) {
+        int root = clusters.getRootNode();
+        if (root < 0) {
+            return 0;
+        }
+
+        float[] planes = extractFrustumPlanes(modelViewProjection.m, nearPlane, farPlane);
+        int[] firstChild = clusters.getNodeFirstChild();
+        int[] childCount = clusters.getNodeChildCount();
+        float[] bounds = clusters.getNodeBounds();
+        float[] cones = clusters.getNodeCones();
+
+        // Обход в глубину с явным стеком: на уровень не больше NODE_FAN_OUT узлов
+        int[] stack = new int[64 * TriangleClusters.NODE_FAN_OUT];
+        int top = 0;
+        stack[top++] = root;
+        int visible = 0;
+        while (top > 0) {
+            int node = stack[--top];
+
+            if (isOutsideFrustum(bounds, node, planes)) {
+                statistics.addFrustumCulledClusters(countLeaves(node, firstChild, childCount));
+                continue;
+            }
+            if (cullMode != CullMode.NONE && isConeCulled(bounds, cones, node, eye, cullMode)) {
+                statistics.addConeCulledClusters(countLeaves(node, firstChild, childCount));
+                continue;
+            }
+
+            if (childCount[node] == 0) {
+                output[visible++] = node;
+                continue;
+            }
+            // Дети кладутся в обратном порядке, чтобы листья выходили по возрастанию
+            for (int child = firstChild[node] + childCount[node] - 1; child >= firstChild[node]; child--) {
+                stack[top++] = child;
+            }
+        }
+        statistics.addVisibleClusters(visible);
+        return visible;
+    }
+
+    // Плоскости в виде a*x + b*y + c*z + d >= 0 для точек внутри, в тех же условиях,
+    // что и GraphicConveyor.computeOutcode: |x| <= -w, |y| <= -w, near <= -w <= far.
+    // Компонента j точки в отсечённых координатах - скалярное произведение на столбец j матрицы.
+    private static float[] extractFrustumPlanes(float[] m, float nearPlane, float farPlane) {
+        float[] x = {m[0], m[4], m[8], m[12]};
+        float[] y = {m[1], m[5], m[9], m[13]};
+        float[] w = {m[3], m[7], m[11], m[15]};
+        float[] planes = new float[6 * 4];
+        for (int k = 0; k < 4; k++) {
+            planes[k] = x[k] - w[k];          // x >= w
+            planes[4 + k] = -x[k] - w[k];     // x <= -w
+            planes[8 + k] = y[k] - w[k];      // y >= w
+            planes[12 + k] = -y[k] - w[k];    // y <= -w
+            planes[16 + k] = -w[k];           // -w >= near
+            planes[20 + k] = w[k];            // -w <= far
+        }
+        planes[19] -= nearPlane;
+        planes[23] += farPlane;
+        return planes;
+    }
+
+    // AABB целиком снаружи хотя бы одной плоскости: даже самый "внутренний" угол снаружи
+    private static boolean isOutsideFrustum(float[] bounds, int node, float[] planes) {
+        int b = node * 6;
+        for (int p = 0; p < planes.length; p += 4) {
+            float a = planes[p], bb = planes[p + 1], c = planes[p + 2], d = planes[p + 3];
+            float x = a >= 0 ? bounds[b + 3] : bounds[b];
+            float y = bb >= 0 ? bounds[b + 4] : bounds[b + 1];
+            float z = c >= 0 ? bounds[b + 5] : bounds[b + 2];
+            if (a * x + bb * y + c * z + d < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Грань задняя, если n . (p - eye) > 0 для её точки p (см. GraphicConveyor.isBackFacing).
+    // Для всех нормалей конуса с осью axis и раствором s и всех точек сферы (center, r) вокруг AABB
+    // достаточно: (center - eye) . axis > (|center - eye| + r) * s + r. Для передних граней - симметрично.
+    private static boolean isConeCulled(float[] bounds, float[] cones, int node, Vector3f eye, CullMode cullMode) {
+        float sine = cones[node * 4 + 3];
+        if (sine >= TriangleClusters.NO_CONE) {
+            return false;
+        }
+        int b = node * 6;
+        float cx = (bounds[b] + bounds[b + 3]) * 0.5f;
+        float cy = (bounds[b + 1] + bounds[b + 4]) * 0.5f;
+        float cz = (bounds[b + 2] + bounds[b + 5]) * 0.5f;
+        float hx = (bounds[b + 3] - bounds[b]) * 0.5f;
+        float hy = (bounds[b + 4] - bounds[b + 1]) * 0.5f;
+        float hz = (bounds[b + 5] - bounds[b + 2]) * 0.5f;
+        float radius = (float) Math.sqrt(hx * hx + hy * hy + hz * hz);
+
+        float dx = cx - eye.x, dy = cy - eye.y, dz = cz - eye.z;
+        float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        float projection = dx * cones[node * 4] + dy * cones[node * 4 + 1] + dz * cones[node * 4 + 2];
+        float margin = (distance + radius) * sine + radius;
+
+        return cullMode == CullMode.BACK ? projection > margin : projection < -margin;
+    }
+
+    private static int countLeaves(int node, int[] firstChild, int[] childCount) {
+        if (childCount[node] == 0) {
+            return 1;
+        }
+        // Листья поддерева идут подряд: от самого левого до самого правого потомка
+        int left = node;
+        int right = node;
+        while (childCount[left] != 0) {
+            left = firstChild[left];
+            right = firstChild[right] + childCount[right] - 1;
+        }
+        return right - left + 1;
+    }
+}
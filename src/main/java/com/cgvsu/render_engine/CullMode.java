@@ -0,0 +1,8 @@
+package com.cgvsu.render_engine;
+
+// Какие грани отбрасывать до растеризации (лицевая сторона - обход против часовой стрелки)
+public enum CullMode {
+    NONE,
+    BACK,
+    FRONT
+}
@@ -0,0 +1,13 @@
+package com.cgvsu.render_engine;
+
+// Закраска фрагмента. Реализация выбирается один раз на вызов отрисовки (и уточняется
+// по набору атрибутов треугольника при его подготовке), поэтому во внутреннем цикле
+// растеризации нет проверок режимов - вызов остаётся мономорфным и встраивается JIT.
+interface FragmentShader {
+    // Подготовка треугольника - выполняется один раз, до растеризации
+    default void setup(ScreenTriangle triangle) {
+    }
+
+    // Цвет пикселя в premultiplied ARGB по барицентрическим координатам
+    int shade(ScreenTriangle triangle, float w0, float w1, float w2);
+}
@@ -0,0 +1,147 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.Vector3f;
+
+// Специализированные шейдеры: по одному на сочетание "текстура / освещение / модель освещения"
+final class FragmentShaders {
+    private static final Vector3f LIGHT_DIR = new Vector3f(0.3f, 0.5f, -0.8f).normalize();
+    private static final float AMBIENT_LIGHT = 0.2f;
+
+    private FragmentShaders() {
+    }
+
+    // Шейдеры одного вызова отрисовки, по индексу [есть UV][есть нормали].
+    // Если у треугольника нет нужного атрибута, он получает более простой шейдер.
+    static final class Selection {
+        private final FragmentShader[][] shaders = new FragmentShader[2][2];
+
+        Selection(Texture texture, TextureFilter filter, boolean useLighting, LightingModel lightingModel) {
+            FragmentShader flat = new Flat();
+            FragmentShader lit = lightingModel == LightingModel.GOURAUD ? new Gouraud() : new Phong();
+            FragmentShader textured = texture != null ? new Textured(texture, filter) : flat;
+            FragmentShader texturedLit = texture == null ? lit
+                    : lightingModel == LightingModel.GOURAUD
+                    ? new TexturedGouraud(texture, filter)
+                    : new TexturedPhong(texture, filter);
+
+            shaders[0][0] = flat;
+            shaders[0][1] = useLighting ? lit : flat;
+            shaders[1][0] = textured;
+            shaders[1][1] = useLighting ? texturedLit : textured;
+        }
+
+        FragmentShader select(ScreenTriangle triangle) {
+            return shaders[triangle.hasUv ? 1 : 0][triangle.hasNormals ? 1 : 0];
+        }
+    }
+
+    // Освещённость по нормали (nx, ny, nz); нулевая нормаль даёт только фоновый свет
+    private static float diffuse(float nx, float ny, float nz) {
+        float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (length == 0) {
+            return AMBIENT_LIGHT;
+        }
+        float dot = (nx * LIGHT_DIR.x + ny * LIGHT_DIR.y + nz * LIGHT_DIR.z) / length;
+        return Math.max(AMBIENT_LIGHT, dot);
+    }
+
+    private static void setupVertexLighting(ScreenTriangle t) {
+        t.intensity0 = diffuse(t.n0x, t.n0y, t.n0z);
+        t.intensity1 = diffuse(t.n1x, t.n1y, t.n1z);
+        t.intensity2 = diffuse(t.n2x, t.n2y, t.n2z);
+    }
+
+    private static final int BASE_COLOR = PackedColor.premultiply(PackedColor.LIGHT_GRAY);
+
+    static final class Flat implements FragmentShader {
+        @Override
+        public int shade(ScreenTriangle t, float w0, float w1, float w2) {
+            return BASE_COLOR;
+        }
+    }
+
+    static final class Phong implements FragmentShader {
+        @Override
+        public int shade(ScreenTriangle t, float w0, float w1, float w2) {
+            float light = diffuse(
+                    w0 * t.n0x + w1 * t.n1x + w2 * t.n2x,
+                    w0 * t.n0y + w1 * t.n1y + w2 * t.n2y,
+                    w0 * t.n0z + w1 * t.n1z + w2 * t.n2z);
+            return PackedColor.premultiply(PackedColor.scale(PackedColor.LIGHT_GRAY, light));
+        }
+    }
+
+    static final class Gouraud implements FragmentShader {
+        @Override
+        public void setup(ScreenTriangle t) {
+            setupVertexLighting(t);
+        }
+
+        @Override
+        public int shade(ScreenTriangle t, float w0, float w1, float w2) {
+            float light = w0 * t.intensity0 + w1 * t.intensity1 + w2 * t.intensity2;
+            return PackedColor.premultiply(PackedColor.scale(PackedColor.LIGHT_GRAY, light));
+        }
+    }
+
+    static final class Textured implements FragmentShader {
+        private final Texture texture;
+        private final TextureFilter filter;
+
+        Textured(Texture texture, TextureFilter filter) {
+            this.texture = texture;
+            this.filter = filter;
+        }
+
+        @Override
+        public int shade(ScreenTriangle t, float w0, float w1, float w2) {
+            float u = w0 * t.u0 + w1 * t.u1 + w2 * t.u2;
+            float v = w0 * t.v0 + w1 * t.v1 + w2 * t.v2;
+            return PackedColor.premultiply(texture.sample(u, v, t.mipLevel, filter));
+        }
+    }
+
+    static final class TexturedPhong implements FragmentShader {
+        private final Texture texture;
+        private final TextureFilter filter;
+
+        TexturedPhong(Texture texture, TextureFilter filter) {
+            this.texture = texture;
+            this.filter = filter;
+        }
+
+        @Override
+        public int shade(ScreenTriangle t, float w0, float w1, float w2) {
+            float u = w0 * t.u0 + w1 * t.u1 + w2 * t.u2;
+            float v = w0 * t.v0 + w1 * t.v1 + w2 * t.v2;
+            float light = diffuse(
+                    w0 * t.n0x + w1 * t.n1x + w2 * t.n2x,
+                    w0 * t.n0y + w1 * t.n1y + w2 * t.n2y,
+                    w0 * t.n0z + w1 * t.n1z + w2 * t.n2z);
+            return PackedColor.premultiply(PackedColor.scale(texture.sample(u, v, t.mipLevel, filter), light));
+        }
+    }
+
+    static final class TexturedGouraud implements FragmentShader {
+        private final Texture texture;
+        private final TextureFilter filter;
+
+        TexturedGouraud(Texture texture, TextureFilter filter) {
+            this.texture = texture;
+            this.filter = filter;
+        }
+
+        @Override
+        public void setup(ScreenTriangle t) {
+            setupVertexLighting(t);
+        }
+
+        @Override
+        public int shade(ScreenTriangle t, float w0, float w1, float w2) {
+            float u = w0 * t.u0 + w1 * t.u1 + w2 * t.u2;
+            float v = w0 * t.v0 + w1 * t.v1 + w2 * t.v2;
+            float light = w0 * t.intensity0 + w1 * t.intensity1 + w2 * t.intensity2;
+            return PackedColor.premultiply(PackedColor.scale(texture.sample(u, v, t.mipLevel, filter), light));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.Model;
+import javafx.scene.image.Image;
+
+// Отслеживает всё, от чего зависит картинка: камеру, модель, размер канваса,
+// текстуру, флаги отрисовки и настройки движка. Если с прошлого кадра ничего не изменилось,
+// перерисовка не нужна - на канвасе остаётся предыдущий кадр.
+public class FrameChangeTracker {
+    private boolean initialized;
+    private Camera camera;
+    private long cameraVersion;
+    private Model model;
+    private long modelVersion;
+    private Image texture;
+    private int width;
+    private int height;
+    private boolean drawWireframe;
+    private boolean useTexture;
+    private boolean useLighting;
+    private RenderSettings settings;
+
+    private long renderedFrameCount;
+    private long reusedFrameCount;
+
+    // Возвращает true, если кадр нужно перерисовать, и запоминает новое состояние
+    public boolean update(Camera camera, Model model, Image texture,
+                          int width, int height,
+                          boolean drawWireframe, boolean useTexture, boolean useLighting,
+                          RenderSettings settings) {
+        long newCameraVersion = camera != null ? camera.getVersion() : 0;
+        long newModelVersion = model != null ? model.getVersion() : 0;
+
+        boolean changed = !initialized
+                || this.camera != camera || this.cameraVersion != newCameraVersion
+                || this.model != model || this.modelVersion != newModelVersion
+                || this.texture != texture
+                || this.width != width || this.height != height
+                || this.drawWireframe != drawWireframe
+                || this.useTexture != useTexture
+                || this.useLighting != useLighting
+                || !settings.equals(this.settings);
+
+        if (!changed) {
+            reusedFrameCount++;
+            return false;
+        }
+
+        initialized = true;
+        this.camera = camera;
+        this.cameraVersion = newCameraVersion;
+        this.model = model;
+        this.modelVersion = newModelVersion;
+        this.texture = texture;
+        this.width = width;
+        this.height = height;
+        this.drawWireframe = drawWireframe;
+        this.useTexture = useTexture;
+        this.useLighting = useLighting;
+        this.settings = settings;
+        renderedFrameCount++;
+        return true;
+    }
+
+    public long getRenderedFrameCount() { return renderedFrameCount; }
+    public long getReusedFrameCount() { return reusedFrameCount; }
+}
@@ -0,0 +1,44 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.model.Model;
+import javafx.scene.image.WritableImage;
+
+// Неизменяемый снимок всего, что нужно для расчёта одного кадра.
+// Камера копируется, поэтому поток JavaFX может менять свою камеру, пока кадр считается.
+// Настройки движка тоже входят в снимок и не меняются посреди кадра.
+public final class FrameRequest {
+    private final Camera camera;
+    private final Model mesh;
+    private final WritableImage texture;
+    private final int width;
+    private final int height;
+    private final boolean drawWireframe;
+    private final boolean useTexture;
+    private final boolean useLighting;
+    private final RenderSettings settings;
+
+    public FrameRequest(Camera camera, Model mesh, WritableImage texture,
+                        int width, int height,
+                        boolean drawWireframe, boolean useTexture, boolean useLighting,
+                        RenderSettings settings) {
+        this.camera = camera.snapshot();
+        this.mesh = mesh;
+        this.texture = texture;
+        this.width = width;
+        this.height = height;
+        this.drawWireframe = drawWireframe;
+        this.useTexture = useTexture;
+        this.useLighting = useLighting;
+        this.settings = settings;
+    }
+
+    public Camera getCamera() { return camera; }
+    public Model getMesh() { return mesh; }
+    public WritableImage getTexture() { return texture; }
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public boolean isDrawWireframe() { return drawWireframe; }
+    public boolean isUseTexture() { return useTexture; }
+    public boolean isUseLighting() { return useLighting; }
+    public RenderSettings getSettings() { return settings; }
+}
@@ -0,0 +1,107 @@
+package com.cgvsu.render_engine;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Счётчики последнего кадра: сколько треугольников отсекла каждая стадия конвейера
+public class FrameStatistics {
+    private int submittedTriangles;
+    private int frustumRejectedTriangles;
+    private int backFaceCulledTriangles;
+    private int nearClippedTriangles;
+    private int guardBandClippedTriangles;
+    private int degenerateTriangles;
+    private int rasterizedTriangles;
+    private int visibleClusters;
+    private int frustumCulledClusters;
+    private int coneCulledClusters;
+    private int occlusionCulledTriangles;
+    private int occlusionCulledClusters;
+    // Пополняются из потоков растеризации
+    private final LongAdder occludedTileFragments = new LongAdder();
+    private final LongAdder occludedBlocks = new LongAdder();
+    private final LongAdder shadedFragments = new LongAdder();
+
+    void reset() {
+        submittedTriangles = 0;
+        frustumRejectedTriangles = 0;
+        backFaceCulledTriangles = 0;
+        nearClippedTriangles = 0;
+        guardBandClippedTriangles = 0;
+        degenerateTriangles = 0;
+        rasterizedTriangles = 0;
+        visibleClusters = 0;
+        frustumCulledClusters = 0;
+        coneCulledClusters = 0;
+        occlusionCulledTriangles = 0;
+        occlusionCulledClusters = 0;
+        occludedTileFragments.reset();
+        occludedBlocks.reset();
+        shadedFragments.reset();
+    }
+
+    void addSubmitted(int count) { submittedTriangles += count; }
+    void addFrustumRejected() { frustumRejectedTriangles++; }
+    void addBackFaceCulled() { backFaceCulledTriangles++; }
+    void addNearClipped() { nearClippedTriangles++; }
+    void addGuardBandClipped() { guardBandClippedTriangles++; }
+    void addDegenerate() { degenerateTriangles++; }
+    void addRasterized() { rasterizedTriangles++; }
+    void addVisibleClusters(int count) { visibleClusters += count; }
+    void addFrustumCulledClusters(int count) { frustumCulledClusters += count; }
+    void addConeCulledClusters(int count) { coneCulledClusters += count; }
+    void addOcclusionCulled(int count) { occlusionCulledTriangles += count; }
+    void addOcclusionCulledCluster() { occlusionCulledClusters++; }
+    void addOccludedTileFragment() { occludedTileFragments.increment(); }
+    void addOccludedBlock() { occludedBlocks.increment(); }
+    void addShadedFragments(int count) { shadedFragments.add(count); }
+
+    // Все треугольники модели, поданные на вход кадра
+    public int getSubmittedTriangles() { return submittedTriangles; }
+    // Целиком вне пирамиды видимости
+    public int getFrustumRejectedTriangles() { return frustumRejectedTriangles; }
+    // Отброшены по ориентации грани
+    public int getBackFaceCulledTriangles() { return backFaceCulledTriangles; }
+    // Пересекали ближнюю плоскость и были обрезаны (не отброшены)
+    public int getNearClippedTriangles() { return nearClippedTriangles; }
+    // Выходили за guard band по x/y и были обрезаны по его границам
+    public int getGuardBandClippedTriangles() { return guardBandClippedTriangles; }
+    // Вырожденные или вне экрана после проекции
+    public int getDegenerateTriangles() { return degenerateTriangles; }
+    // Ушли в растеризатор (после отсечения их может стать больше)
+    public int getRasterizedTriangles() { return rasterizedTriangles; }
+    // Кластеры модели, прошедшие отбраковку иерархии и ушедшие на обработку вершин
+    public int getVisibleClusters() { return visibleClusters; }
+    // Кластеры, чей узел иерархии целиком вне пирамиды видимости
+    public int getFrustumCulledClusters() { return frustumCulledClusters; }
+    // Кластеры, отброшенные по конусу нормалей (только при CullMode BACK/FRONT)
+    public int getConeCulledClusters() { return coneCulledClusters; }
+    // Отброшены иерархическим Z-буфером до растеризации (поодиночке и в составе кластеров)
+    public int getOcclusionCulledTriangles() { return occlusionCulledTriangles; }
+    // Кластеры модели, отброшенные целиком
+    public int getOcclusionCulledClusters() { return occlusionCulledClusters; }
+    // Части треугольников в отдельных тайлах, закрытые целиком
+    public long getOccludedTileFragments() { return occludedTileFragments.sum(); }
+    // Блоки 8x8, пропущенные при растеризации
+    public long getOccludedBlocks() { return occludedBlocks.sum(); }
+    // Фрагменты, прошедшие тест глубины и закрашенные (при отложенной закраске - записанные в G-буфер)
+    public long getShadedFragments() { return shadedFragments.sum(); }
+
+    @Override
+    public String toString() {
+        return "submitted=" + submittedTriangles +
+                ", frustumRejected=" + frustumRejectedTriangles +
+                ", backFaceCulled=" + backFaceCulledTriangles +
+                ", nearClipped=" + nearClippedTriangles +
+                ", guardBandClipped=" + guardBandClippedTriangles +
+                ", degenerate=" + degenerateTriangles +
+                ", rasterized=" + rasterizedTriangles +
+                ", visibleClusters=" + visibleClusters +
+                ", frustumCulledClusters=" + frustumCulledClusters +
+                ", coneCulledClusters=" + coneCulledClusters +
+                ", occlusionCulled=" + occlusionCulledTriangles +
+                ", occlusionCulledClusters=" + occlusionCulledClusters +
+                ", occludedTileFragments=" + occludedTileFragments.sum() +
+                ", occludedBlocks=" + occludedBlocks.sum() +
+                ", shadedFragments=" + shadedFragments.sum();
+    }
+}
@@ -0,0 +1,71 @@
+package com.cgvsu.render_engine;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// Компактный G-буфер для отложенной закраски: номер видимого треугольника и две
+// барицентрические координаты на пиксель (третья восстанавливается как 1 - w0 - w1).
+// Глубина хранится в Z-буфере цели отрисовки.
+final class GBuffer {
+    private static final int EMPTY = -1;
+    // Строк на задачу при параллельной закраске
+    private static final int ROWS_PER_CHUNK = 16;
+
+    private final int width;
+    private final int height;
+    private final int[] triangleIds;
+    private final float[] barycentric0;
+    private final float[] barycentric1;
+
+    GBuffer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.triangleIds = new int[width * height];
+        this.barycentric0 = new float[width * height];
+        this.barycentric1 = new float[width * height];
+        Arrays.fill(triangleIds, EMPTY);
+    }
+
+    void clear() {
+        Arrays.fill(triangleIds, EMPTY);
+    }
+
+    // Запись видимости; вызывается только после успешного теста глубины
+    void write(int x, int y, int triangleId, float w0, float w1) {
+        int index = y * width + x;
+        triangleIds[index] = triangleId;
+        barycentric0[index] = w0;
+        barycentric1[index] = w1;
+    }
+
+    // Второй проход: каждый покрытый пиксель закрашивается один раз шейдером своего треугольника
+    void resolve(List<ScreenTriangle> triangles, int[] colorBuffer, ForkJoinPool pool) {
+        int chunkCount = (height + ROWS_PER_CHUNK - 1) / ROWS_PER_CHUNK;
+        if (pool == null) {
+            resolveRows(triangles, colorBuffer, 0, height);
+            return;
+        }
+        pool.submit(() -> IntStream.range(0, chunkCount).parallel().forEach(chunk ->
+                resolveRows(triangles, colorBuffer,
+                        chunk * ROWS_PER_CHUNK, Math.min(height, (chunk + 1) * ROWS_PER_CHUNK))
+        )).join();
+    }
+
+    private void resolveRows(List<ScreenTriangle> triangles, int[] colorBuffer, int fromRow, int toRow) {
+        for (int index = fromRow * width, end = toRow * width; index < end; index++) {
+            int id = triangleIds[index];
+            if (id == EMPTY) {
+                continue;
+            }
+            ScreenTriangle t = triangles.get(id);
+            float w0 = barycentric0[index];
+            float w1 = barycentric1[index];
+            colorBuffer[index] = t.shader.shade(t, w0, w1, 1.0f - w0 - w1);
+        }
+    }
+
+    int getWidth() { return width; }
+    int getHeight() { return height; }
+}
@@ -89,6 +89,84 @@ public class GraphicConveyor {
         );
     }
 
+    // ========== ОТСЕЧЕНИЕ В ОДНОРОДНЫХ КООРДИНАТАХ ==========
+    // В perspective() m[11] = -1, поэтому w = -z вида, и у точек перед камерой w < 0.
+    // Расстояние до камеры вдоль оси взгляда равно -w, границы пирамиды видимости:
+    // |x| <= -w, |y| <= -w, near <= -w <= far.
+
+    public static final int OUTCODE_LEFT = 1;
+    public static final int OUTCODE_RIGHT = 1 << 1;
+    public static final int OUTCODE_BOTTOM = 1 << 2;
+    public static final int OUTCODE_TOP = 1 << 3;
+    public static final int OUTCODE_NEAR = 1 << 4;
+    public static final int OUTCODE_FAR = 1 << 5;
+
+    public static int computeOutcode(float x, float y, float w, float nearPlane, float farPlane) {
+        float distance = -w;
+        int code = 0;
+        if (x < -distance) code |= OUTCODE_LEFT;
+        if (x > distance) code |= OUTCODE_RIGHT;
+        if (y < -distance) code |= OUTCODE_BOTTOM;
+        if (y > distance) code |= OUTCODE_TOP;
+        if (!(distance >= nearPlane)) code |= OUTCODE_NEAR;
+        if (distance > farPlane) code |= OUTCODE_FAR;
+        return code;
+    }
+
+    // Алгоритм Сазерленда-Ходжмена для одной плоскости (ближней).
+    // Вершины лежат в input подряд по stride чисел, первые четыре - x, y, z, w;
+    // остальные компоненты (атрибуты) интерполируются линейно вместе с ними.
+    // Возвращает число вершин в output (0, если многоугольник целиком за плоскостью).
+    public static int clipPolygonAgainstNearPlane(final float[] input, final int vertexCount, final int stride,
+                                                  final float nearPlane, final float[] output) {
+        return clipPolygonAgainstPlane(input, vertexCount, stride, 0, 0, -1, -nearPlane, output);
+    }
+
+    // То же для произвольной плоскости: внутри точки с a * x + b * y + c * w + d >= 0.
+    // Многоугольник после обрезки одной плоскостью получает не больше одной новой вершины.
+    public static int clipPolygonAgainstPlane(final float[] input, final int vertexCount, final int stride,
+                                              final float a, final float b, final float c, final float d,
+                                              final float[] output) {
+        int outputCount = 0;
+        for (int i = 0; i < vertexCount; i++) {
+            int current = i * stride;
+            int next = ((i + 1) % vertexCount) * stride;
+
+            float currentDistance = a * input[current] + b * input[current + 1] + c * input[current + 3] + d;
+            float nextDistance = a * input[next] + b * input[next + 1] + c * input[next + 3] + d;
+            boolean currentInside = currentDistance >= 0;
+            boolean nextInside = nextDistance >= 0;
+
+            if (currentInside) {
+                System.arraycopy(input, current, output, outputCount * stride, stride);
+                outputCount++;
+            }
+            if (currentInside != nextInside) {
+                float t = currentDistance / (currentDistance - nextDistance);
+                int target = outputCount * stride;
+                for (int k = 0; k < stride; k++) {
+                    output[target + k] = input[current + k] + t * (input[next + k] - input[current + k]);
+                }
+                outputCount++;
+            }
+        }
+        return outputCount;
+    }
+
+    // Грань обращена от камеры, если её нормаль (по обходу v0 -> v1 -> v2 против часовой стрелки)
+    // смотрит в сторону, противоположную направлению на камеру
+    public static boolean isBackFacing(float x0, float y0, float z0,
+                                       float x1, float y1, float z1,
+                                       float x2, float y2, float z2,
+                                       final Vector3f eye) {
+        float ux = x1 - x0, uy = y1 - y0, uz = z1 - z0;
+        float vx = x2 - x0, vy = y2 - y0, vz = z2 - z0;
+        float nx = uy * vz - uz * vy;
+        float ny = uz * vx - ux * vz;
+        float nz = ux * vy - uy * vx;
+        return nx * (eye.x - x0) + ny * (eye.y - y0) + nz * (eye.z - z0) < 0;
+    }
+
     // Дополнительные полезные методы для матричных преобразований:
 
     public static Matrix4f createTranslationMatrix(float tx, float ty, float tz) {
@@ -0,0 +1,118 @@
+package com.cgvsu.render_engine;
+
+import java.util.Arrays;
+
+// Иерархический Z-буфер: максимальная (самая дальняя) глубина по блокам 8x8 и 64x64 пикселя.
+// Если ближайшая точка треугольника дальше максимума блока, в блоке он ничего не закрасит.
+// Значения пересчитываются лениво: запись в Z-буфер только помечает блок, максимум
+// считается при следующем запросе. Блок 64x64 совпадает с тайлом растеризатора,
+// поэтому потоки пула работают с непересекающимися ячейками.
+final class HierarchicalZBuffer {
+    static final int FINE_SIZE = 8;
+    static final int COARSE_SIZE = TileRasterizer.TILE_SIZE;
+    private static final int FINE_PER_COARSE = COARSE_SIZE / FINE_SIZE;
+    // Запас на погрешность интерполяции глубины
+    private static final float DEPTH_EPSILON = 1e-5f;
+
+    private final ZBuffer zBuffer;
+    private final int fineX;
+    private final int fineY;
+    private final int coarseX;
+    private final int coarseY;
+    private final float[] fine;
+    private final float[] coarse;
+    private final boolean[] fineDirty;
+    private final boolean[] coarseDirty;
+
+    HierarchicalZBuffer(ZBuffer zBuffer) {
+        this.zBuffer = zBuffer;
+        this.fineX = (zBuffer.getWidth() + FINE_SIZE - 1) / FINE_SIZE;
+        this.fineY = (zBuffer.getHeight() + FINE_SIZE - 1) / FINE_SIZE;
+        this.coarseX = (zBuffer.getWidth() + COARSE_SIZE - 1) / COARSE_SIZE;
+        this.coarseY = (zBuffer.getHeight() + COARSE_SIZE - 1) / COARSE_SIZE;
+        this.fine = new float[fineX * fineY];
+        this.coarse = new float[coarseX * coarseY];
+        this.fineDirty = new boolean[fine.length];
+        this.coarseDirty = new boolean[coarse.length];
+        clear();
+    }
+
+    // Вызывается вместе с очисткой Z-буфера
+    void clear() {
+        Arrays.fill(fine, Float.MAX_VALUE);
+        Arrays.fill(coarse, Float.MAX_VALUE);
+        Arrays.fill(fineDirty, false);
+        Arrays.fill(coarseDirty, false);
+    }
+
+    // Пиксель (x, y) мог получить новую глубину
+    void markWritten(int x, int y) {
+        fineDirty[(y / FINE_SIZE) * fineX + x / FINE_SIZE] = true;
+        coarseDirty[(y / COARSE_SIZE) * coarseX + x / COARSE_SIZE] = true;
+    }
+
+    // Все пиксели блока 8x8 с левым верхним углом (x, y) уже ближе minDepth
+    boolean isBlockOccluded(int x, int y, float minDepth) {
+        return minDepth > fineMax((y / FINE_SIZE) * fineX + x / FINE_SIZE) + DEPTH_EPSILON;
+    }
+
+    // Консервативная проверка прямоугольника экрана: сначала по блокам 64x64,
+    // для непрошедших - по блокам 8x8
+    boolean isOccluded(int minX, int minY, int maxX, int maxY, float minDepth) {
+        for (int cy = minY / COARSE_SIZE; cy <= maxY / COARSE_SIZE; cy++) {
+            for (int cx = minX / COARSE_SIZE; cx <= maxX / COARSE_SIZE; cx++) {
+                if (minDepth > coarseMax(cy * coarseX + cx) + DEPTH_EPSILON) {
+                    continue;
+                }
+                int fromX = Math.max(minX / FINE_SIZE, cx * FINE_PER_COARSE);
+                int toX = Math.min(maxX / FINE_SIZE, (cx + 1) * FINE_PER_COARSE - 1);
+                int fromY = Math.max(minY / FINE_SIZE, cy * FINE_PER_COARSE);
+                int toY = Math.min(maxY / FINE_SIZE, (cy + 1) * FINE_PER_COARSE - 1);
+                for (int fy = fromY; fy <= toY; fy++) {
+                    for (int fx = fromX; fx <= toX; fx++) {
+                        if (minDepth <= fineMax(fy * fineX + fx) + DEPTH_EPSILON) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private float coarseMax(int cell) {
+        if (coarseDirty[cell]) {
+            int cx = cell % coarseX;
+            int cy = cell / coarseX;
+            float max = -Float.MAX_VALUE;
+            int toY = Math.min(fineY, (cy + 1) * FINE_PER_COARSE);
+            int toX = Math.min(fineX, (cx + 1) * FINE_PER_COARSE);
+            for (int fy = cy * FINE_PER_COARSE; fy < toY; fy++) {
+                for (int fx = cx * FINE_PER_COARSE; fx < toX; fx++) {
+                    max = Math.max(max, fineMax(fy * fineX + fx));
+                }
+            }
+            coarse[cell] = max;
+            coarseDirty[cell] = false;
+        }
+        return coarse[cell];
+    }
+
+    private float fineMax(int cell) {
+        if (fineDirty[cell]) {
+            int x0 = (cell % fineX) * FINE_SIZE;
+            int y0 = (cell / fineX) * FINE_SIZE;
+            int x1 = Math.min(zBuffer.getWidth(), x0 + FINE_SIZE);
+            int y1 = Math.min(zBuffer.getHeight(), y0 + FINE_SIZE);
+            float max = -Float.MAX_VALUE;
+            for (int y = y0; y < y1 && max < Float.MAX_VALUE; y++) {
+                for (int x = x0; x < x1; x++) {
+                    max = Math.max(max, zBuffer.getDepthBound(x, y));
+                }
+            }
+            fine[cell] = max;
+            fineDirty[cell] = false;
+        }
+        return fine[cell];
+    }
+}
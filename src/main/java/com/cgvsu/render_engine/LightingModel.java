@@ -0,0 +1,8 @@
+package com.cgvsu.render_engine;
+
+public enum LightingModel {
+    // Нормаль интерполируется и нормализуется в каждом пикселе
+    PHONG,
+    // Освещённость считается в вершинах и интерполируется - дешевле на больших моделях
+    GOURAUD
+}
@@ -0,0 +1,74 @@
+package com.cgvsu.render_engine;
+
+// Программная растеризация отрезков (Брезенхем) прямо в буфер кадра с учётом глубины
+final class LineRasterizer {
+    private LineRasterizer() {
+    }
+
+    static void drawLine(int[] colorBuffer, ZBuffer zBuffer, int width, int height,
+                         float x0, float y0, float z0,
+                         float x1, float y1, float z1,
+                         int color, float depthAtInfinity, float relativeTolerance) {
+        // Отсечение отрезка по экрану (Лян-Барски), чтобы не шагать по невидимой части
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        float[] range = {0.0f, 1.0f};
+        if (!clipTest(-dx, x0, range)
+                || !clipTest(dx, width - 1 - x0, range)
+                || !clipTest(-dy, y0, range)
+                || !clipTest(dy, height - 1 - y0, range)) {
+            return;
+        }
+
+        float dz = z1 - z0;
+        float startX = x0 + range[0] * dx, startY = y0 + range[0] * dy, startZ = z0 + range[0] * dz;
+        float endX = x0 + range[1] * dx, endY = y0 + range[1] * dy, endZ = z0 + range[1] * dz;
+
+        int px = Math.round(startX);
+        int py = Math.round(startY);
+        int ex = Math.round(endX);
+        int ey = Math.round(endY);
+
+        int stepsX = Math.abs(ex - px);
+        int stepsY = Math.abs(ey - py);
+        int sx = px < ex ? 1 : -1;
+        int sy = py < ey ? 1 : -1;
+        int steps = Math.max(stepsX, stepsY);
+        float zStep = steps > 0 ? (endZ - startZ) / steps : 0.0f;
+        float z = startZ;
+        int error = stepsX - stepsY;
+
+        for (int i = 0; i <= steps; i++) {
+            // Сдвиг расстояния d на долю relativeTolerance меняет z = A + B / d на |z - A| * relativeTolerance
+            float depthTolerance = Math.abs(z - depthAtInfinity) * relativeTolerance;
+            if (zBuffer.passesDepthTest(px, py, z, depthTolerance)) {
+                colorBuffer[py * width + px] = color;
+            }
+            int doubled = error * 2;
+            if (doubled > -stepsY) {
+                error -= stepsY;
+                px += sx;
+            }
+            if (doubled < stepsX) {
+                error += stepsX;
+                py += sy;
+            }
+            z += zStep;
+        }
+    }
+
+    private static boolean clipTest(float p, float q, float[] range) {
+        if (p == 0) {
+            return q >= 0;
+        }
+        float t = q / p;
+        if (p < 0) {
+            if (t > range[1]) return false;
+            if (t > range[0]) range[0] = t;
+        } else {
+            if (t < range[0]) return false;
+            if (t < range[1]) range[1] = t;
+        }
+        return true;
+    }
+}
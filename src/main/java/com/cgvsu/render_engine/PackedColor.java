@@ -0,0 +1,46 @@
+package com.cgvsu.render_engine;
+
+// Работа с цветом, упакованным в int (0xAARRGGBB), без создания объектов Color
+final class PackedColor {
+    static final int LIGHT_GRAY = 0xFFD3D3D3;
+    static final int BLACK = 0xFF000000;
+
+    private PackedColor() {
+    }
+
+    static int alpha(int argb) { return argb >>> 24; }
+    static int red(int argb) { return (argb >> 16) & 0xFF; }
+    static int green(int argb) { return (argb >> 8) & 0xFF; }
+    static int blue(int argb) { return argb & 0xFF; }
+
+    static int pack(int a, int r, int g, int b) {
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    // Умножение RGB на коэффициент освещённости, альфа не меняется
+    static int scale(int argb, float factor) {
+        int r = clamp((int) (red(argb) * factor + 0.5f));
+        int g = clamp((int) (green(argb) * factor + 0.5f));
+        int b = clamp((int) (blue(argb) * factor + 0.5f));
+        return (argb & 0xFF000000) | (r << 16) | (g << 8) | b;
+    }
+
+    // Перевод в premultiplied-формат для PixelFormat.getIntArgbPreInstance()
+    static int premultiply(int argb) {
+        int a = alpha(argb);
+        if (a == 0xFF) {
+            return argb;
+        }
+        if (a == 0) {
+            return 0;
+        }
+        int r = (red(argb) * a + 127) / 255;
+        int g = (green(argb) * a + 127) / 255;
+        int b = (blue(argb) * a + 127) / 255;
+        return pack(a, r, g, b);
+    }
+
+    private static int clamp(int channel) {
+        return channel < 0 ? 0 : Math.min(channel, 0xFF);
+    }
+}
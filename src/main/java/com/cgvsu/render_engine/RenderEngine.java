@@ -1,38 +1,125 @@
 package com.cgvsu.render_engine;
 
 import com.cgvsu.math.Matrix4f;
-import com.cgvsu.math.Vector2f;
 import com.cgvsu.math.Vector3f;
 import javafx.scene.canvas.GraphicsContext;
 import com.cgvsu.model.Model;
-import com.cgvsu.model.Polygon;
-import javafx.scene.image.WritableImage;
-import javafx.scene.paint.Color;
-import javafx.scene.image.PixelWriter;
-import javafx.scene.image.PixelReader;
+import com.cgvsu.model.TriangleClusters;
+import com.cgvsu.model.TriangleIndexBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static com.cgvsu.render_engine.GraphicConveyor.*;
 
 public class RenderEngine {
-    private static final Vector3f DEFAULT_LIGHT_DIR = new Vector3f(0.3f, 0.5f, -0.8f).normalize();
-    private static final float AMBIENT_LIGHT = 0.2f;
+    // Размер блока для ранней отбраковки
+    private static final int BLOCK_SIZE = HierarchicalZBuffer.FINE_SIZE;
+    // Треугольников в пачке между проверками иерархического Z-буфера
+    private static final int BATCH_SIZE = 1 << 13;
+    // Допуск глубины для линий контура, чтобы рёбра не пропадали на собственных гранях,
+    // в долях расстояния до камеры (глубина после проекции нелинейна, постоянный допуск не годится)
+    private static final float WIREFRAME_DEPTH_TOLERANCE = 0.02f;
+    // Вершина для отсечения: x, y, z, w и барицентрические координаты в исходном треугольнике
+    private static final int CLIP_VERTEX_STRIDE = 7;
+    // Треугольник после пяти плоскостей отсечения (ближняя и четыре границы guard band)
+    private static final int MAX_CLIP_VERTICES = 3 + 5;
+
+    // Кадр захватывает текущий растеризатор в начале и работает на нём до конца,
+    // даже если число потоков тем временем поменяли
+    private static volatile TileRasterizer tileRasterizer =
+            new TileRasterizer(Runtime.getRuntime().availableProcessors());
+
+    // Проходы растеризации
+    private enum RasterPass {
+        // Тест глубины и закраска за один проход
+        COMBINED,
+        // Только глубина (предварительный проход)
+        DEPTH_ONLY,
+        // Закраска фрагментов, глубина которых совпала с уже записанной
+        SHADE_EQUAL
+    }
+    private static final TextureCache textureCache = new TextureCache(8);
+
+    // Число потоков растеризации (1 - однопоточный режим на вызывающем потоке)
+    public static synchronized void setWorkerCount(int workerCount) {
+        TileRasterizer previous = tileRasterizer;
+        if (workerCount == previous.getWorkerCount()) {
+            return;
+        }
+        tileRasterizer = new TileRasterizer(workerCount);
+        // Старый пул остановится, когда на нём досчитается текущий кадр
+        previous.shutdown();
+    }
+
+    public static int getWorkerCount() {
+        return tileRasterizer.getWorkerCount();
+    }
 
+    public static TextureCache getTextureCache() {
+        return textureCache;
+    }
+
+    // Синхронная отрисовка: кадр считается и сразу выводится на канвас (только в потоке JavaFX)
     public static void render(
             final GraphicsContext graphicsContext,
-            final Camera camera,
-            final Model mesh,
-            final int width,
-            final int height,
-            final WritableImage texture,
-            boolean useTexture,
-            boolean useLighting) {
-
-        if (mesh == null || width <= 0 || height <= 0) {
+            final RenderTarget renderTarget,
+            final FrameRequest request) {
+
+        if (request.getMesh() == null || request.getWidth() <= 0 || request.getHeight() <= 0) {
             return;
         }
 
+        renderFrame(renderTarget, request);
+        present(graphicsContext, renderTarget);
+    }
+
+    // Вывод готового кадра на канвас (только в потоке JavaFX)
+    public static void present(final GraphicsContext graphicsContext, final RenderTarget renderTarget) {
+        int width = renderTarget.getWidth();
+        int height = renderTarget.getHeight();
+
+        // Очистка канваса
+        graphicsContext.clearRect(0, 0, width, height);
+
+        // Отображение результата
+        graphicsContext.drawImage(renderTarget.present(), 0, 0);
+    }
+
+    // Расчёт кадра в буферы renderTarget. Не обращается к сцене JavaFX,
+    // поэтому может выполняться в отдельном потоке отрисовки.
+    public static void renderFrame(final RenderTarget renderTarget, final FrameRequest request) {
+        TileRasterizer rasterizer = acquireTileRasterizer();
+        try {
+            renderFrame(renderTarget, request, rasterizer);
+        } finally {
+            rasterizer.release();
+        }
+    }
+
+    // Выведенный из работы растеризатор уже заменён новым - берём следующий
+    private static TileRasterizer acquireTileRasterizer() {
+        while (true) {
+            TileRasterizer rasterizer = tileRasterizer;
+            if (rasterizer.acquire()) {
+                return rasterizer;
+            }
+        }
+    }
+
+    private static void renderFrame(final RenderTarget renderTarget, final FrameRequest request,
+                                    final TileRasterizer rasterizer) {
+        Camera camera = request.getCamera();
+        Model mesh = request.getMesh();
+        int width = request.getWidth();
+        int height = request.getHeight();
+        boolean drawWireframe = request.isDrawWireframe();
+        boolean useLighting = request.isUseLighting();
+        RenderSettings settings = request.getSettings();
+        CullMode cullMode = settings.getCullMode();
+
         // Настройка матриц преобразования
         Matrix4f modelMatrix = GraphicConveyor.rotateScaleTranslate();
         Matrix4f viewMatrix = camera.getViewMatrix();
@@ -42,191 +129,584 @@ public class RenderEngine {
         modelViewProjectionMatrix.mul(viewMatrix);
         modelViewProjectionMatrix.mul(projectionMatrix);
 
-        // Создание буферов
-        WritableImage frameBuffer = new WritableImage(width, height);
-        PixelWriter pixelWriter = frameBuffer.getPixelWriter();
-        PixelReader textureReader = texture.getPixelReader();
-        ZBuffer zBuffer = new ZBuffer(width, height);
-
-        // Очистка канваса
-        graphicsContext.clearRect(0, 0, width, height);
-
-        // Рендеринг каждого полигона
-        for (Polygon polygon : mesh.getPolygons()) {
-            List<Polygon> triangles = polygon.triangulate();
-
-            for (Polygon triangle : triangles) {
-                renderTriangle(triangle, mesh, modelViewProjectionMatrix,
-                        pixelWriter, textureReader, zBuffer,
-                        width, height, texture, useTexture, useLighting);
+        // Буферы кадра переиспользуются между кадрами
+        renderTarget.resize(width, height);
+        renderTarget.clear();
+        // Текстура декодируется один раз и берётся из кэша
+        Texture decodedTexture = request.isUseTexture() ? textureCache.get(request.getTexture()) : null;
+        // Шейдеры выбираются один раз на кадр по включённым режимам
+        FragmentShaders.Selection shaders = new FragmentShaders.Selection(
+                decodedTexture, settings.getTextureFilter(), useLighting, settings.getLightingModel());
+        ZBuffer zBuffer = renderTarget.getZBuffer();
+        int[] colorBuffer = renderTarget.getColorBuffer();
+        FrameStatistics statistics = renderTarget.getStatistics();
+        statistics.reset();
+
+        // Иерархия кластеров отбраковывается по пирамиде видимости и конусам нормалей
+        // до какой-либо работы с вершинами
+        TriangleClusters clusters = mesh.getClusters();
+        int[] visibleClusters = renderTarget.acquireVisibleClusters(clusters.getClusterCount());
+        int visibleCount = ClusterCuller.cull(clusters, modelViewProjectionMatrix, camera.getPosition(),
+                camera.getNearPlane(), camera.getFarPlane(), cullMode, visibleClusters, statistics);
+
+        // Преобразуются только вершины видимых кластеров; контуру нужны все рёбра модели
+        VertexProcessor vertices = renderTarget.getVertexProcessor();
+        if (drawWireframe) {
+            vertices.process(mesh.getVertexCoordinates(), mesh.getVertexCount(), modelViewProjectionMatrix,
+                    width, height, camera.getNearPlane(), camera.getFarPlane(),
+                    rasterizer.getPool());
+        } else {
+            vertices.processClusters(mesh.getVertexCoordinates(), mesh.getVertexCount(), modelViewProjectionMatrix,
+                    width, height, camera.getNearPlane(), camera.getFarPlane(),
+                    clusters.getClusterVertices(), clusters.getClusterVertexOffsets(),
+                    visibleClusters, visibleCount, rasterizer.getPool());
+        }
 
-                // Отрисовка контура (опционально)
-                drawWireframe(triangle, mesh, modelViewProjectionMatrix,
-                        graphicsContext, width, height);
+        // Отсечение, отбраковка граней и подготовка треугольников
+        // Триангуляция берётся из кэша модели
+        TriangleIndexBuffer triangles = mesh.getTriangles();
+        statistics.addSubmitted(triangles.getTriangleCount());
+        List<ScreenTriangle> screenTriangles = renderTarget.acquireScreenTriangles();
+        HierarchicalZBuffer hierarchicalZ = renderTarget.getHierarchicalZBuffer();
+
+        // При отложенной закраске растеризация пишет только видимость, шейдеры работают во втором проходе
+        GBuffer gBuffer = settings.getShadingMode() == ShadingMode.DEFERRED ? renderTarget.acquireGBuffer() : null;
+
+        // Кластеры обходятся спереди назад, чтобы ранний тест глубины отбрасывал как можно больше
+        int[] clusterOrder = renderTarget.acquireClusterOrder(visibleCount);
+        sortClustersFrontToBack(clusters, visibleClusters, visibleCount, camera, modelViewProjectionMatrix,
+                renderTarget.acquireClusterKeys(visibleCount), clusterOrder);
+        int[] clusterOffsets = clusters.getClusterOffsets();
+        boolean prePass = settings.isDepthPrePass();
+
+        // Треугольники идут пачками целых кластеров: подготовка пачки проверяет видимость по глубине,
+        // накопленной предыдущими пачками, и закрытое не доходит до растеризатора
+        for (int batchStart = 0; batchStart < visibleCount; ) {
+            int batchEnd = batchStart;
+            int batchTriangles = 0;
+            while (batchEnd < visibleCount && batchTriangles < BATCH_SIZE) {
+                int cluster = clusterOrder[batchEnd++];
+                batchTriangles += clusterOffsets[cluster + 1] - clusterOffsets[cluster];
             }
+
+            int first = screenTriangles.size();
+            setupTriangles(triangles, clusters, clusterOrder, batchStart, batchEnd, mesh, vertices,
+                    camera.getPosition(), cullMode, width, height, decodedTexture, useLighting, shaders,
+                    hierarchicalZ, screenTriangles, statistics);
+            rasterizeBatch(rasterizer, renderTarget, screenTriangles, first,
+                    prePass ? RasterPass.DEPTH_ONLY : RasterPass.COMBINED, colorBuffer, zBuffer, hierarchicalZ, gBuffer, width, height, statistics);
+            batchStart = batchEnd;
         }
 
-        // Отображение результата
-        graphicsContext.drawImage(frameBuffer, 0, 0);
-    }
+        // После предварительного прохода глубина окончательна: закрашиваются только
+        // фрагменты, совпавшие с ней, то есть ровно по одному на пиксель
+        if (prePass) {
+            rasterizeBatch(rasterizer, renderTarget, screenTriangles, 0, RasterPass.SHADE_EQUAL,
+                    colorBuffer, zBuffer, hierarchicalZ, gBuffer, width, height, statistics);
+        }
 
-    private static void renderTriangle(Polygon triangle, Model mesh,
-                                       Matrix4f transformMatrix,
-                                       PixelWriter pixelWriter,
-                                       PixelReader textureReader,
-                                       ZBuffer zBuffer,
-                                       int width, int height,
-                                       WritableImage texture,
-                                       boolean useTexture,
-                                       boolean useLighting) {
+        if (gBuffer != null) {
+            gBuffer.resolve(screenTriangles, colorBuffer, rasterizer.getPool());
+        }
 
-        List<Integer> vertexIndices = triangle.getVertexIndices();
-        if (vertexIndices.size() != 3) {
-            return;
+        // Контур рисуется поверх заливки с учётом глубины; при выключенном режиме не считается вовсе
+        if (drawWireframe) {
+            drawWireframe(mesh.getEdges(), vertices, colorBuffer, zBuffer, width, height);
         }
 
-        // Преобразование вершин
-        Vector3f[] vertices = new Vector3f[3];
-        Vector2f[] screenPoints = new Vector2f[3];
-        float[] depths = new float[3];
+        // Список остаётся для следующего кадра, но треугольники этого кадра больше не нужны
+        screenTriangles.clear();
+    }
 
-        for (int i = 0; i < 3; i++) {
-            Vector3f vertex = mesh.getVertices().get(vertexIndices.get(i));
-            Vector3f transformed = multiplyMatrix4ByVector3(transformMatrix, vertex);
-            screenPoints[i] = vertexToPoint(transformed, width, height);
-            depths[i] = transformed.z;
-            vertices[i] = vertex;
-        }
-
-        // Получение текстурных координат (если есть)
-        Vector2f[] uvCoords = null;
-        if (useTexture && !triangle.getTextureVertexIndices().isEmpty()) {
-            uvCoords = new Vector2f[3];
-            List<Integer> uvIndices = triangle.getTextureVertexIndices();
-            for (int i = 0; i < 3; i++) {
-                uvCoords[i] = mesh.getTextureVertices().get(uvIndices.get(i));
-            }
+    // Порядок кластеров "спереди назад" в смысле теста глубины: первым идёт кластер,
+    // чья ближайшая к победе точка сферы имеет наименьшую глубину после проекции
+    // (Z-буфер во всех режимах пропускает меньшую глубину). Результат - в order[0..visibleCount),
+    // keys - рабочий массив той же длины
+    private static void sortClustersFrontToBack(TriangleClusters clusters, int[] visible, int visibleCount,
+                                                Camera camera, Matrix4f mvp, long[] keys, int[] order) {
+        Vector3f forward = camera.getTarget().subtract(camera.getPosition()).normalize();
+        float[] centers = clusters.getCenters();
+        float[] radii = clusters.getRadii();
+        float[] m = mvp.m;
+
+        // Ключ: float-глубина, преобразованная в знаковое целое с тем же порядком, и номер кластера
+        for (int i = 0; i < visibleCount; i++) {
+            int c = visible[i];
+            float cx = centers[c * 3], cy = centers[c * 3 + 1], cz = centers[c * 3 + 2];
+            float ox = forward.x * radii[c], oy = forward.y * radii[c], oz = forward.z * radii[c];
+            float depth = Math.min(
+                    projectedDepth(m, cx + ox, cy + oy, cz + oz),
+                    projectedDepth(m, cx - ox, cy - oy, cz - oz));
+            int bits = Float.floatToIntBits(depth);
+            int sortable = bits >= 0 ? bits : bits ^ 0x7FFFFFFF;
+            keys[i] = ((long) sortable << 32) | c;
         }
+        Arrays.sort(keys, 0, visibleCount);
 
-        // Получение нормалей (если есть)
-        Vector3f[] normals = null;
-        if (useLighting && !triangle.getNormalIndices().isEmpty()) {
-            normals = new Vector3f[3];
-            List<Integer> normalIndices = triangle.getNormalIndices();
-            for (int i = 0; i < 3; i++) {
-                normals[i] = mesh.getNormals().get(normalIndices.get(i));
-            }
+        for (int i = 0; i < visibleCount; i++) {
+            order[i] = (int) keys[i];
         }
+    }
 
-        // Нахождение bounding box
-        int minX = (int) Math.max(0, Math.floor(Math.min(screenPoints[0].x,
-                Math.min(screenPoints[1].x, screenPoints[2].x))));
-        int maxX = (int) Math.min(width - 1, Math.ceil(Math.max(screenPoints[0].x,
-                Math.max(screenPoints[1].x, screenPoints[2].x))));
-        int minY = (int) Math.max(0, Math.floor(Math.min(screenPoints[0].y,
-                Math.min(screenPoints[1].y, screenPoints[2].y))));
-        int maxY = (int) Math.min(height - 1, Math.ceil(Math.max(screenPoints[0].y,
-                Math.max(screenPoints[1].y, screenPoints[2].y))));
-
-        if (minX > maxX || minY > maxY) {
-            return;
+    // z после преобразования и перспективного деления - та же арифметика,
+    // что в GraphicConveyor.multiplyMatrix4ByVector3, но без создания Vector3f
+    private static float projectedDepth(float[] m, float x, float y, float z) {
+        float pz = (x * m[2]) + (y * m[6]) + (z * m[10]) + m[14];
+        float w = (x * m[3]) + (y * m[7]) + (z * m[11]) + m[15];
+        if (w == 0.0f || w == 1.0f) {
+            return pz;
         }
+        return pz / w;
+    }
 
-        float area = edgeFunction(screenPoints[0], screenPoints[1], screenPoints[2]);
-        if (Math.abs(area) < 1e-6f) {
-            return;
+    // Параллельная растеризация по тайлам треугольников output[first..]
+    private static void rasterizeBatch(TileRasterizer rasterizer, RenderTarget renderTarget,
+                                       List<ScreenTriangle> screenTriangles, int first, RasterPass pass,
+                                       int[] colorBuffer, ZBuffer zBuffer,
+                                       HierarchicalZBuffer hierarchicalZ, GBuffer gBuffer,
+                                       int width, int height,
+                                       FrameStatistics statistics) {
+        int count = screenTriangles.size() - first;
+        int[] bounds = renderTarget.acquireTriangleBounds(count);
+        for (int i = 0; i < count; i++) {
+            ScreenTriangle t = screenTriangles.get(first + i);
+            bounds[i * 4] = t.minX;
+            bounds[i * 4 + 1] = t.minY;
+            bounds[i * 4 + 2] = t.maxX;
+            bounds[i * 4 + 3] = t.maxY;
         }
 
-        // Растеризация треугольника
-        for (int y = minY; y <= maxY; y++) {
-            for (int x = minX; x <= maxX; x++) {
-                Vector2f p = new Vector2f(x + 0.5f, y + 0.5f);
+        rasterizer.rasterize(count, bounds, width, height,
+                (index, minX, minY, maxX, maxY) -> renderTriangle(screenTriangles.get(first + index), first + index,
+                        pass, minX, minY, maxX, maxY, colorBuffer, zBuffer, hierarchicalZ, gBuffer, width, statistics));
+    }
+
+    // Подготовка треугольников кластеров clusterOrder[fromCluster..toCluster)
+    private static void setupTriangles(TriangleIndexBuffer triangles, TriangleClusters clusters,
+                                       int[] clusterOrder, int fromCluster, int toCluster, Model mesh,
+                                       VertexProcessor vertices, Vector3f eye,
+                                       CullMode cullMode,
+                                       int width, int height,
+                                       Texture texture, boolean useLighting,
+                                       FragmentShaders.Selection shaders,
+                                       HierarchicalZBuffer hierarchicalZ,
+                                       List<ScreenTriangle> output,
+                                       FrameStatistics statistics) {
+        IntBuffer vertexIndices = triangles.getVertexIndices();
+        IntBuffer uvIndices = triangles.getTextureVertexIndices();
+        IntBuffer normalIndices = triangles.getNormalIndices();
+        int[] outcodes = vertices.getOutcodes();
+        FloatBuffer modelVertices = mesh.getVertexCoordinates();
+        FloatBuffer textureCoordinates = mesh.getTextureCoordinates();
+        FloatBuffer normalCoordinates = mesh.getNormalCoordinates();
+
+        float[] screenX = vertices.getScreenX();
+        float[] screenY = vertices.getScreenY();
+        float[] depth = vertices.getDepth();
+
+        // Рабочие массивы отсечения - одни на всю пачку
+        float[] clipInput = new float[MAX_CLIP_VERTICES * CLIP_VERTEX_STRIDE];
+        float[] clipOutput = new float[MAX_CLIP_VERTICES * CLIP_VERTEX_STRIDE];
+
+        IntBuffer triangleOrder = clusters.getTriangleOrder();
+        int[] clusterOffsets = clusters.getClusterOffsets();
+
+        for (int position = fromCluster; position < toCluster; position++) {
+            int cluster = clusterOrder[position];
+            int clusterStart = clusterOffsets[cluster];
+            int clusterEnd = clusterOffsets[cluster + 1];
+
+            // Кластер целиком за уже нарисованным - пропускаем без подготовки
+            if (isClusterOccluded(vertexIndices, triangleOrder, clusterStart, clusterEnd,
+                    vertices, hierarchicalZ, width, height)) {
+                statistics.addOcclusionCulledCluster();
+                statistics.addOcclusionCulled(clusterEnd - clusterStart);
+                continue;
+            }
 
-                float w0 = edgeFunction(screenPoints[1], screenPoints[2], p) / area;
-                float w1 = edgeFunction(screenPoints[2], screenPoints[0], p) / area;
-                float w2 = edgeFunction(screenPoints[0], screenPoints[1], p) / area;
+            for (int k = clusterStart; k < clusterEnd; k++) {
+                int triangle = triangleOrder.get(k);
+                int offset = triangle * 3;
+                int i0 = vertexIndices.get(offset);
+                int i1 = vertexIndices.get(offset + 1);
+                int i2 = vertexIndices.get(offset + 2);
+
+                // Тривиальное отбрасывание: все три вершины вне одной плоскости пирамиды видимости
+                if ((outcodes[i0] & outcodes[i1] & outcodes[i2]) != 0) {
+                    statistics.addFrustumRejected();
+                    continue;
+                }
 
-                if (w0 >= 0 && w1 >= 0 && w2 >= 0) {
-                    // Интерполяция глубины
-                    float z = w0 * depths[0] + w1 * depths[1] + w2 * depths[2];
+                if (cullMode != CullMode.NONE) {
+                    boolean backFacing = isBackFacing(
+                            modelVertices.get(i0 * 3), modelVertices.get(i0 * 3 + 1), modelVertices.get(i0 * 3 + 2),
+                            modelVertices.get(i1 * 3), modelVertices.get(i1 * 3 + 1), modelVertices.get(i1 * 3 + 2),
+                            modelVertices.get(i2 * 3), modelVertices.get(i2 * 3 + 1), modelVertices.get(i2 * 3 + 2), eye);
+                    if (backFacing == (cullMode == CullMode.BACK)) {
+                        statistics.addBackFaceCulled();
+                        continue;
+                    }
+                }
 
-                    if (zBuffer.shouldDraw(x, y, z)) {
-                        Color color = calculateColor(w0, w1, w2, uvCoords, normals,
-                                textureReader, texture,
-                                useTexture, useLighting);
-                        pixelWriter.setColor(x, y, color);
+                // Атрибуты берутся, только если они есть у треугольника и нужны шейдерам
+                boolean hasUv = texture != null && uvIndices.get(offset) >= 0;
+                boolean hasNormals = useLighting && normalIndices.get(offset) >= 0;
+
+                // Вершины перед камерой, но за guard band, нельзя перевести в фиксированную точку -
+                // такой треугольник обрезается по его границам вместе с ближней плоскостью
+                boolean nearClipped = ((outcodes[i0] | outcodes[i1] | outcodes[i2]) & OUTCODE_NEAR) != 0;
+                if (nearClipped
+                        || !ScreenTriangle.insideGuardBand(screenX[i0], screenY[i0])
+                        || !ScreenTriangle.insideGuardBand(screenX[i1], screenY[i1])
+                        || !ScreenTriangle.insideGuardBand(screenX[i2], screenY[i2])) {
+                    if (nearClipped) {
+                        statistics.addNearClipped();
+                    } else {
+                        statistics.addGuardBandClipped();
                     }
+                    clipAndSetupTriangle(vertices, triangle, i0, i1, i2, clipInput, clipOutput,
+                            hasUv ? uvIndices : null, textureCoordinates,
+                            hasNormals ? normalIndices : null, normalCoordinates,
+                            width, height, texture, shaders, hierarchicalZ, output, statistics);
+                    continue;
+                }
+
+                // Вершины уже преобразованы - только читаем по индексу
+                ScreenTriangle screenTriangle = ScreenTriangle.create(
+                        screenX[i0], screenY[i0], depth[i0],
+                        screenX[i1], screenY[i1], depth[i1],
+                        screenX[i2], screenY[i2], depth[i2],
+                        width, height);
+                if (screenTriangle != null && hasUv) {
+                    screenTriangle.setUv(textureCoordinates, uvIndices, offset);
+                }
+                if (screenTriangle != null && hasNormals) {
+                    screenTriangle.setNormals(normalCoordinates, normalIndices, offset);
                 }
+                addScreenTriangle(screenTriangle, triangle, texture, shaders, hierarchicalZ, output, statistics);
             }
         }
     }
 
-    private static Color calculateColor(float w0, float w1, float w2,
-                                        Vector2f[] uvCoords, Vector3f[] normals,
-                                        PixelReader textureReader, WritableImage texture,
-                                        boolean useTexture, boolean useLighting) {
+    // Треугольник пересекает ближнюю плоскость или выходит за guard band: обрезаем в однородных
+    // координатах и разбиваем полученный многоугольник (до MAX_CLIP_VERTICES вершин) веером.
+    // uvIndices / normalIndices равны null, если атрибут не нужен.
+    // clipInput / clipOutput - рабочие массивы на MAX_CLIP_VERTICES вершин, переиспользуются между треугольниками.
+    private static void clipAndSetupTriangle(VertexProcessor vertices, int triangle, int i0, int i1, int i2,
+                                             float[] clipInput, float[] clipOutput,
+                                             IntBuffer uvIndices, FloatBuffer textureCoordinates,
+                                             IntBuffer normalIndices, FloatBuffer normalCoordinates,
+                                             int width, int height,
+                                             Texture texture,
+                                             FragmentShaders.Selection shaders,
+                                             HierarchicalZBuffer hierarchicalZ,
+                                             List<ScreenTriangle> output,
+                                             FrameStatistics statistics) {
+        int offset = triangle * 3;
+        loadClipVertex(vertices, i0, 0, clipInput);
+        loadClipVertex(vertices, i1, 1, clipInput);
+        loadClipVertex(vertices, i2, 2, clipInput);
+        int count = clipPolygonAgainstNearPlane(clipInput, 3, CLIP_VERTEX_STRIDE,
+                vertices.getNearPlane(), clipOutput);
+
+        // Границы guard band |экранная координата| <= GUARD_BAND в однородных координатах.
+        // После ближней плоскости у всех вершин w < 0, поэтому при умножении на w знаки меняются.
+        float guardX = 2.0f * ScreenTriangle.GUARD_BAND / width;
+        float guardY = 2.0f * ScreenTriangle.GUARD_BAND / height;
+        count = clipPolygonAgainstPlane(clipOutput, count, CLIP_VERTEX_STRIDE,
+                1, 0, 1 - guardX, 0, clipInput);
+        count = clipPolygonAgainstPlane(clipInput, count, CLIP_VERTEX_STRIDE,
+                -1, 0, -(1 + guardX), 0, clipOutput);
+        count = clipPolygonAgainstPlane(clipOutput, count, CLIP_VERTEX_STRIDE,
+                0, 1, -(1 + guardY), 0, clipInput);
+        count = clipPolygonAgainstPlane(clipInput, count, CLIP_VERTEX_STRIDE,
+                0, -1, 1 - guardY, 0, clipOutput);
+
+        int first = 0;
+        for (int j = 1; j < count - 1; j++) {
+            int second = j * CLIP_VERTEX_STRIDE;
+            int third = (j + 1) * CLIP_VERTEX_STRIDE;
+            ScreenTriangle screenTriangle = ScreenTriangle.create(
+                    clipToScreenX(clipOutput, first, width), clipToScreenY(clipOutput, first, height),
+                    clipToDepth(clipOutput, first),
+                    clipToScreenX(clipOutput, second, width), clipToScreenY(clipOutput, second, height),
+                    clipToDepth(clipOutput, second),
+                    clipToScreenX(clipOutput, third, width), clipToScreenY(clipOutput, third, height),
+                    clipToDepth(clipOutput, third),
+                    width, height);
+
+            // Атрибуты вершин - барицентрическая смесь атрибутов исходного треугольника
+            if (screenTriangle != null && uvIndices != null) {
+                screenTriangle.setUv(textureCoordinates, uvIndices, offset,
+                        clipOutput, first + 4, second + 4, third + 4);
+            }
+            if (screenTriangle != null && normalIndices != null) {
+                screenTriangle.setNormals(normalCoordinates, normalIndices, offset,
+                        clipOutput, first + 4, second + 4, third + 4);
+            }
+            addScreenTriangle(screenTriangle, triangle, texture, shaders, hierarchicalZ, output, statistics);
+        }
+    }
+
+    // Вершина index в слот slot: однородные координаты и барицентрические координаты в исходном треугольнике
+    private static void loadClipVertex(VertexProcessor vertices, int index, int slot, float[] clipInput) {
+        int base = slot * CLIP_VERTEX_STRIDE;
+        clipInput[base] = vertices.getClipX()[index];
+        clipInput[base + 1] = vertices.getClipY()[index];
+        clipInput[base + 2] = vertices.getClipZ()[index];
+        clipInput[base + 3] = vertices.getClipW()[index];
+        for (int i = 0; i < 3; i++) {
+            clipInput[base + 4 + i] = i == slot ? 1.0f : 0.0f;
+        }
+    }
 
-        Color baseColor = Color.LIGHTGRAY;
+    // Перспективное деление и перевод в экран вершины clipped[base..] (x, y, z, w)
+    private static float clipToScreenX(float[] clipped, int base, int width) {
+        return (clipped[base] / clipped[base + 3] + 1.0f) * 0.5f * width;
+    }
 
-        // Текстурирование
-        if (useTexture && uvCoords != null && texture != null) {
-            float u = w0 * uvCoords[0].x + w1 * uvCoords[1].x + w2 * uvCoords[2].x;
-            float v = w0 * uvCoords[0].y + w1 * uvCoords[1].y + w2 * uvCoords[2].y;
+    private static float clipToScreenY(float[] clipped, int base, int height) {
+        return (1.0f - clipped[base + 1] / clipped[base + 3]) * 0.5f * height;
+    }
 
-            int texX = (int) (u * (texture.getWidth() - 1));
-            int texY = (int) ((1 - v) * (texture.getHeight() - 1));
+    private static float clipToDepth(float[] clipped, int base) {
+        return clipped[base + 2] / clipped[base + 3];
+    }
 
-            texX = Math.max(0, Math.min(texX, (int)texture.getWidth() - 1));
-            texY = Math.max(0, Math.min(texY, (int)texture.getHeight() - 1));
+    // Консервативная проверка кластера: прямоугольник на экране и ближайшая глубина
+    // по всем его вершинам. Кластеры, задевающие ближнюю плоскость, не проверяются.
+    private static boolean isClusterOccluded(IntBuffer vertexIndices, IntBuffer triangleOrder, int from, int to,
+                                             VertexProcessor vertices, HierarchicalZBuffer hierarchicalZ,
+                                             int width, int height) {
+        int[] outcodes = vertices.getOutcodes();
+        float[] screenX = vertices.getScreenX();
+        float[] screenY = vertices.getScreenY();
+        float[] depth = vertices.getDepth();
+
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        float minDepth = Float.MAX_VALUE;
+        for (int i = from * 3; i < to * 3; i++) {
+            int vertex = vertexIndices.get(triangleOrder.get(i / 3) * 3 + i % 3);
+            if ((outcodes[vertex] & OUTCODE_NEAR) != 0) {
+                return false;
+            }
+            minX = Math.min(minX, screenX[vertex]);
+            maxX = Math.max(maxX, screenX[vertex]);
+            minY = Math.min(minY, screenY[vertex]);
+            maxY = Math.max(maxY, screenY[vertex]);
+            minDepth = Math.min(minDepth, depth[vertex]);
+        }
 
-            baseColor = textureReader.getColor(texX, texY);
+        int x0 = (int) Math.max(0, Math.floor(minX));
+        int x1 = (int) Math.min(width - 1, Math.ceil(maxX));
+        int y0 = (int) Math.max(0, Math.floor(minY));
+        int y1 = (int) Math.min(height - 1, Math.ceil(maxY));
+        if (x0 > x1 || y0 > y1) {
+            return false;
         }
+        return hierarchicalZ.isOccluded(x0, y0, x1, y1, minDepth);
+    }
 
-        // Освещение
-        if (useLighting && normals != null) {
-            Vector3f normal = new Vector3f(
-                    w0 * normals[0].x + w1 * normals[1].x + w2 * normals[2].x,
-                    w0 * normals[0].y + w1 * normals[1].y + w2 * normals[2].y,
-                    w0 * normals[0].z + w1 * normals[1].z + w2 * normals[2].z
-            ).normalize();
+    private static void addScreenTriangle(ScreenTriangle triangle, int sourceIndex,
+                                          Texture texture,
+                                          FragmentShaders.Selection shaders,
+                                          HierarchicalZBuffer hierarchicalZ,
+                                          List<ScreenTriangle> output,
+                                          FrameStatistics statistics) {
+        if (triangle == null) {
+            statistics.addDegenerate();
+            return;
+        }
+        if (hierarchicalZ.isOccluded(triangle.minX, triangle.minY, triangle.maxX, triangle.maxY,
+                triangle.minDepth)) {
+            statistics.addOcclusionCulled(1);
+            return;
+        }
+        triangle.sourceIndex = sourceIndex;
+        // mip-уровень выбирается один раз на треугольник по отношению площадей UV и экрана
+        if (texture != null && triangle.hasUv) {
+            triangle.mipLevel = texture.selectLevel(triangle.uvArea(), triangle.screenArea);
+        }
+        triangle.shader = shaders.select(triangle);
+        triangle.shader.setup(triangle);
+        output.add(triangle);
+        statistics.addRasterized();
+    }
 
-            float diffuse = Math.max(AMBIENT_LIGHT, normal.dot(DEFAULT_LIGHT_DIR));
+    // Растеризация треугольника в пределах прямоугольника тайла.
+    // Вызывается из потоков пула: пишет только в пиксели [minX..maxX] x [minY..maxY].
+    // Рёберные функции считаются инкрементально, блоки 8x8 целиком вне треугольника отбрасываются сразу.
+    // С G-буфером фрагменты не закрашиваются, а только записываются как видимые.
+    // Блоки выровнены по сетке иерархического Z-буфера: закрытые блоки пропускаются целиком.
+    private static void renderTriangle(ScreenTriangle t, int index, RasterPass pass,
+                                       int minX, int minY, int maxX, int maxY,
+                                       int[] colorBuffer,
+                                       ZBuffer zBuffer,
+                                       HierarchicalZBuffer hierarchicalZ,
+                                       GBuffer gBuffer,
+                                       int width,
+                                       FrameStatistics statistics) {
 
-            return new Color(
-                    baseColor.getRed() * diffuse,
-                    baseColor.getGreen() * diffuse,
-                    baseColor.getBlue() * diffuse,
-                    baseColor.getOpacity()
-            );
+        if (hierarchicalZ.isOccluded(minX, minY, maxX, maxY, t.minDepth)) {
+            statistics.addOccludedTileFragment();
+            return;
         }
 
-        return baseColor;
+        FragmentShader shader = t.shader;
+        int owner = t.sourceIndex;
+        boolean shade = pass != RasterPass.DEPTH_ONLY;
+        int shadedFragments = 0;
+
+        float z0 = t.z0, z1 = t.z1, z2 = t.z2;
+
+        // Шаг рёберных функций на один пиксель
+        long stepX0 = t.a0 << ScreenTriangle.SUB_PIXEL_BITS, stepY0 = t.b0 << ScreenTriangle.SUB_PIXEL_BITS;
+        long stepX1 = t.a1 << ScreenTriangle.SUB_PIXEL_BITS, stepY1 = t.b1 << ScreenTriangle.SUB_PIXEL_BITS;
+        long stepX2 = t.a2 << ScreenTriangle.SUB_PIXEL_BITS, stepY2 = t.b2 << ScreenTriangle.SUB_PIXEL_BITS;
+
+        // Смещение к углу блока, где рёберная функция максимальна
+        long blockMax0 = Math.max(0, stepX0) * (BLOCK_SIZE - 1) + Math.max(0, stepY0) * (BLOCK_SIZE - 1);
+        long blockMax1 = Math.max(0, stepX1) * (BLOCK_SIZE - 1) + Math.max(0, stepY1) * (BLOCK_SIZE - 1);
+        long blockMax2 = Math.max(0, stepX2) * (BLOCK_SIZE - 1) + Math.max(0, stepY2) * (BLOCK_SIZE - 1);
+
+        for (int alignedY = minY & -BLOCK_SIZE; alignedY <= maxY; alignedY += BLOCK_SIZE) {
+            int blockY = Math.max(minY, alignedY);
+            int blockEndY = Math.min(maxY, alignedY + BLOCK_SIZE - 1);
+            long py = ((long) blockY << ScreenTriangle.SUB_PIXEL_BITS) + ScreenTriangle.HALF_PIXEL;
+
+            for (int alignedX = minX & -BLOCK_SIZE; alignedX <= maxX; alignedX += BLOCK_SIZE) {
+                int blockX = Math.max(minX, alignedX);
+                int blockEndX = Math.min(maxX, alignedX + BLOCK_SIZE - 1);
+                long px = ((long) blockX << ScreenTriangle.SUB_PIXEL_BITS) + ScreenTriangle.HALF_PIXEL;
+
+                // Значения в центре левого верхнего пикселя блока
+                long row0 = t.a0 * px + t.b0 * py + t.c0;
+                long row1 = t.a1 * px + t.b1 * py + t.c1;
+                long row2 = t.a2 * px + t.b2 * py + t.c2;
+
+                // Блок целиком вне хотя бы одного ребра
+                if (row0 + blockMax0 < t.threshold0
+                        || row1 + blockMax1 < t.threshold1
+                        || row2 + blockMax2 < t.threshold2) {
+                    continue;
+                }
+
+                // Блок уже закрыт более близкой геометрией
+                if (hierarchicalZ.isBlockOccluded(blockX, blockY, t.minDepth)) {
+                    statistics.addOccludedBlock();
+                    continue;
+                }
+
+                boolean written = false;
+                for (int y = blockY; y <= blockEndY; y++) {
+                    long e0 = row0, e1 = row1, e2 = row2;
+
+                    for (int x = blockX; x <= blockEndX; x++) {
+                        if (e0 >= t.threshold0 && e1 >= t.threshold1 && e2 >= t.threshold2) {
+                            float w0 = e0 * t.invArea;
+                            float w1 = e1 * t.invArea;
+                            float w2 = e2 * t.invArea;
+
+                            // Интерполяция глубины
+                            float z = w0 * z0 + w1 * z1 + w2 * z2;
+
+                            boolean visible = pass == RasterPass.SHADE_EQUAL
+                                    ? zBuffer.matchesDepth(x, y, z, owner)
+                                    : zBuffer.shouldDraw(x, y, z, owner);
+                            if (visible && shade) {
+                                shadedFragments++;
+                                if (gBuffer != null) {
+                                    gBuffer.write(x, y, index, w0, w1);
+                                } else {
+                                    colorBuffer[y * width + x] = shader.shade(t, w0, w1, w2);
+                                }
+                            }
+                            written |= visible;
+                        }
+                        e0 += stepX0;
+                        e1 += stepX1;
+                        e2 += stepX2;
+                    }
+                    row0 += stepY0;
+                    row1 += stepY1;
+                    row2 += stepY2;
+                }
+                // Проход закраски по готовой глубине Z-буфер не меняет
+                if (written && pass != RasterPass.SHADE_EQUAL) {
+                    hierarchicalZ.markWritten(blockX, blockY);
+                }
+            }
+        }
+        statistics.addShadedFragments(shadedFragments);
     }
 
-    private static void drawWireframe(Polygon triangle, Model mesh,
-                                      Matrix4f transformMatrix,
-                                      GraphicsContext gc,
+    private static void drawWireframe(int[] edges, VertexProcessor vertices,
+                                      int[] colorBuffer, ZBuffer zBuffer,
                                       int width, int height) {
+        int[] outcodes = vertices.getOutcodes();
+        float[] screenX = vertices.getScreenX();
+        float[] screenY = vertices.getScreenY();
+        float[] depth = vertices.getDepth();
+        // Глубина после проекции равна A + B / d, где d - расстояние вдоль оси взгляда;
+        // A - её предел на бесконечности, по нему допуск пересчитывается в единицы z
+        float near = vertices.getNearPlane();
+        float far = vertices.getFarPlane();
+        float depthAtInfinity = (far + near) / (far - near);
+
+        // Рабочие массивы обрезки рёбер - одни на весь контур
+        float[] clipped = new float[8];
+        float[] screen = new float[6];
+
+        for (int edge = 0; edge < edges.length; edge += 2) {
+            int from = edges[edge];
+            int to = edges[edge + 1];
+
+            if ((outcodes[from] & outcodes[to]) != 0) {
+                continue;
+            }
 
-        List<Integer> vertexIndices = triangle.getVertexIndices();
+            if (((outcodes[from] | outcodes[to]) & OUTCODE_NEAR) == 0) {
+                LineRasterizer.drawLine(colorBuffer, zBuffer, width, height,
+                        screenX[from], screenY[from], depth[from],
+                        screenX[to], screenY[to], depth[to],
+                        PackedColor.BLACK, depthAtInfinity, WIREFRAME_DEPTH_TOLERANCE);
+                continue;
+            }
 
-        Vector2f[] points = new Vector2f[vertexIndices.size()];
-        for (int i = 0; i < vertexIndices.size(); i++) {
-            Vector3f vertex = mesh.getVertices().get(vertexIndices.get(i));
-            Vector3f transformed = multiplyMatrix4ByVector3(transformMatrix, vertex);
-            points[i] = vertexToPoint(transformed, width, height);
+            // Ребро пересекает ближнюю плоскость: обрезаем в однородных координатах
+            clipEdgeAgainstNearPlane(vertices, from, to, clipped);
+            for (int k = 0; k < 2; k++) {
+                float w = clipped[k * 4 + 3];
+                screen[k * 3] = (clipped[k * 4] / w + 1.0f) * 0.5f * width;
+                screen[k * 3 + 1] = (1.0f - clipped[k * 4 + 1] / w) * 0.5f * height;
+                screen[k * 3 + 2] = clipped[k * 4 + 2] / w;
+            }
+            LineRasterizer.drawLine(colorBuffer, zBuffer, width, height,
+                    screen[0], screen[1], screen[2], screen[3], screen[4], screen[5],
+                    PackedColor.BLACK, depthAtInfinity, WIREFRAME_DEPTH_TOLERANCE);
         }
+    }
 
-        gc.setStroke(Color.BLACK);
-        gc.setLineWidth(1);
-
-        for (int i = 0; i < points.length; i++) {
-            int next = (i + 1) % points.length;
-            gc.strokeLine(points[i].x, points[i].y, points[next].x, points[next].y);
+    // Концы ребра (x, y, z, w) после обрезки по ближней плоскости - в result[0..8); одна из вершин
+    // гарантированно перед ней, так как рёбра целиком за плоскостью отброшены по кодам отсечения
+    private static void clipEdgeAgainstNearPlane(VertexProcessor vertices, int from, int to, float[] result) {
+        loadClipEdgeVertex(vertices, from, result, 0);
+        loadClipEdgeVertex(vertices, to, result, 4);
+
+        float distanceFrom = -result[3] - vertices.getNearPlane();
+        float distanceTo = -result[7] - vertices.getNearPlane();
+        float t = distanceFrom / (distanceFrom - distanceTo);
+        int outside = distanceFrom < 0 ? 0 : 4;
+        for (int k = 0; k < 4; k++) {
+            result[outside + k] = result[k] + t * (result[4 + k] - result[k]);
         }
     }
 
-    private static float edgeFunction(Vector2f a, Vector2f b, Vector2f c) {
-        return (c.x - a.x) * (b.y - a.y) - (c.y - a.y) * (b.x - a.x);
+    private static void loadClipEdgeVertex(VertexProcessor vertices, int index, float[] result, int base) {
+        result[base] = vertices.getClipX()[index];
+        result[base + 1] = vertices.getClipY()[index];
+        result[base + 2] = vertices.getClipZ()[index];
+        result[base + 3] = vertices.getClipW()[index];
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,69 @@
+package com.cgvsu.render_engine;
+
+import java.util.Objects;
+
+// Неизменяемые настройки движка. Передаются в кадр вместе со снимком FrameRequest,
+// поэтому не меняются посреди расчёта и учитываются FrameChangeTracker.
+public final class RenderSettings {
+    public static final RenderSettings DEFAULT = new RenderSettings(
+            CullMode.NONE, TextureFilter.BILINEAR, LightingModel.PHONG, ShadingMode.FORWARD, false);
+
+    private final CullMode cullMode;
+    private final TextureFilter textureFilter;
+    private final LightingModel lightingModel;
+    private final ShadingMode shadingMode;
+    // Предварительный проход только по глубине: каждый пиксель закрашивается один раз
+    private final boolean depthPrePass;
+
+    public RenderSettings(CullMode cullMode, TextureFilter textureFilter, LightingModel lightingModel,
+                          ShadingMode shadingMode, boolean depthPrePass) {
+        this.cullMode = Objects.requireNonNull(cullMode);
+        this.textureFilter = Objects.requireNonNull(textureFilter);
+        this.lightingModel = Objects.requireNonNull(lightingModel);
+        this.shadingMode = Objects.requireNonNull(shadingMode);
+        this.depthPrePass = depthPrePass;
+    }
+
+    public RenderSettings withCullMode(CullMode mode) {
+        return new RenderSettings(mode, textureFilter, lightingModel, shadingMode, depthPrePass);
+    }
+
+    public RenderSettings withTextureFilter(TextureFilter filter) {
+        return new RenderSettings(cullMode, filter, lightingModel, shadingMode, depthPrePass);
+    }
+
+    public RenderSettings withLightingModel(LightingModel model) {
+        return new RenderSettings(cullMode, textureFilter, model, shadingMode, depthPrePass);
+    }
+
+    public RenderSettings withShadingMode(ShadingMode mode) {
+        return new RenderSettings(cullMode, textureFilter, lightingModel, mode, depthPrePass);
+    }
+
+    public RenderSettings withDepthPrePass(boolean enabled) {
+        return new RenderSettings(cullMode, textureFilter, lightingModel, shadingMode, enabled);
+    }
+
+    public CullMode getCullMode() { return cullMode; }
+    public TextureFilter getTextureFilter() { return textureFilter; }
+    public LightingModel getLightingModel() { return lightingModel; }
+    public ShadingMode getShadingMode() { return shadingMode; }
+    public boolean isDepthPrePass() { return depthPrePass; }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        RenderSettings other = (RenderSettings) obj;
+        return cullMode == other.cullMode
+                && textureFilter == other.textureFilter
+                && lightingModel == other.lightingModel
+                && shadingMode == other.shadingMode
+                && depthPrePass == other.depthPrePass;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(cullMode, textureFilter, lightingModel, shadingMode, depthPrePass);
+    }
+}
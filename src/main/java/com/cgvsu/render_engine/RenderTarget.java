@@ -0,0 +1,128 @@
+package com.cgvsu.render_engine;
+
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Буферы кадра одного вьюпорта: цвет (premultiplied ARGB), глубина и изображение для вывода.
+// Живут между кадрами и пересоздаются только при изменении размера канваса.
+public class RenderTarget {
+    private final ZBuffer.DepthMode depthMode;
+    private int width;
+    private int height;
+    private int[] colorBuffer;
+    private ZBuffer zBuffer;
+    private HierarchicalZBuffer hierarchicalZBuffer;
+    private WritableImage image;
+    // Создаётся только при первом кадре в режиме отложенной закраски
+    private GBuffer gBuffer;
+    private int reallocationCount;
+    private final VertexProcessor vertexProcessor = new VertexProcessor();
+    // Рабочие массивы кадра: растут до нужного размера и переиспользуются между кадрами
+    private int[] visibleClusters = new int[0];
+    private long[] clusterKeys = new long[0];
+    private int[] clusterOrder = new int[0];
+    private int[] triangleBounds = new int[0];
+    private final ArrayList<ScreenTriangle> screenTriangles = new ArrayList<>();
+    private final FrameStatistics statistics = new FrameStatistics();
+
+    public RenderTarget() {
+        this(ZBuffer.DepthMode.STANDARD);
+    }
+
+    public RenderTarget(ZBuffer.DepthMode depthMode) {
+        this.depthMode = depthMode;
+        this.colorBuffer = new int[0];
+    }
+
+    // Возвращает true, если буферы пришлось пересоздать
+    public boolean resize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Render target size must be positive: " + width + "x" + height);
+        }
+        if (width == this.width && height == this.height) {
+            return false;
+        }
+
+        this.width = width;
+        this.height = height;
+        this.colorBuffer = new int[width * height];
+        this.zBuffer = new ZBuffer(width, height, depthMode);
+        this.hierarchicalZBuffer = new HierarchicalZBuffer(zBuffer);
+        this.image = new WritableImage(width, height);
+        this.gBuffer = null;
+        reallocationCount++;
+        return true;
+    }
+
+    // Подготовка к новому кадру: прозрачный фон и пустой Z-буфер
+    public void clear() {
+        Arrays.fill(colorBuffer, 0);
+        zBuffer.clear();
+        hierarchicalZBuffer.clear();
+    }
+
+    // Один пакетный перенос кадра в изображение
+    public WritableImage present() {
+        image.getPixelWriter().setPixels(0, 0, width, height,
+                PixelFormat.getIntArgbPreInstance(), colorBuffer, 0, width);
+        return image;
+    }
+
+    // G-буфер текущего размера, очищенный для нового кадра
+    GBuffer acquireGBuffer() {
+        if (gBuffer == null) {
+            gBuffer = new GBuffer(width, height);
+        } else {
+            gBuffer.clear();
+        }
+        return gBuffer;
+    }
+
+    int[] acquireVisibleClusters(int capacity) {
+        if (visibleClusters.length < capacity) {
+            visibleClusters = new int[capacity];
+        }
+        return visibleClusters;
+    }
+
+    long[] acquireClusterKeys(int capacity) {
+        if (clusterKeys.length < capacity) {
+            clusterKeys = new long[capacity];
+        }
+        return clusterKeys;
+    }
+
+    int[] acquireClusterOrder(int capacity) {
+        if (clusterOrder.length < capacity) {
+            clusterOrder = new int[capacity];
+        }
+        return clusterOrder;
+    }
+
+    // По 4 значения на треугольник; пачки разного размера используют один массив
+    int[] acquireTriangleBounds(int triangleCount) {
+        if (triangleBounds.length < triangleCount * 4) {
+            triangleBounds = new int[triangleCount * 4];
+        }
+        return triangleBounds;
+    }
+
+    // Пустой список треугольников кадра; ёмкость остаётся от прошлых кадров
+    ArrayList<ScreenTriangle> acquireScreenTriangles() {
+        screenTriangles.clear();
+        return screenTriangles;
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int[] getColorBuffer() { return colorBuffer; }
+    public ZBuffer getZBuffer() { return zBuffer; }
+    HierarchicalZBuffer getHierarchicalZBuffer() { return hierarchicalZBuffer; }
+    public WritableImage getImage() { return image; }
+    public int getReallocationCount() { return reallocationCount; }
+    public VertexProcessor getVertexProcessor() { return vertexProcessor; }
+    public FrameStatistics getStatistics() { return statistics; }
+}
@@ -0,0 +1,102 @@
+package com.cgvsu.render_engine;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// Отдельный поток отрисовки. Поток JavaFX только отправляет снимки состояния (submit)
+// и забирает готовые кадры (pollFrame), поэтому тяжёлая модель не блокирует интерфейс.
+//
+// Буферов три: в один пишет поток отрисовки, второй лежит готовым к показу,
+// третий в это время выводится на экран. Передача идёт через атомарную замену ссылок, без блокировок.
+// Если кадры считаются быстрее, чем показываются, непоказанный кадр просто заменяется более свежим.
+public class RenderThread {
+    private static final int BUFFER_COUNT = 3;
+
+    private final AtomicReference<FrameRequest> pendingRequest = new AtomicReference<>();
+    private final AtomicReference<RenderTarget> readyFrame = new AtomicReference<>();
+    // Ошибка последнего несостоявшегося кадра, ещё не забранная потоком JavaFX
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    private final ConcurrentLinkedQueue<RenderTarget> freeTargets = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running;
+
+    public RenderThread() {
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            freeTargets.add(new RenderTarget());
+        }
+        thread = new Thread(this::renderLoop, "render-thread");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    // Новый запрос заменяет ещё не начатый старый - считается только самое свежее состояние
+    public void submit(FrameRequest request) {
+        pendingRequest.set(request);
+        LockSupport.unpark(thread);
+    }
+
+    // Последний готовый кадр или null, если нового кадра нет.
+    // После вывода на экран кадр нужно вернуть через releaseFrame.
+    public RenderTarget pollFrame() {
+        return readyFrame.getAndSet(null);
+    }
+
+    // Ошибка расчёта кадра или null. Кадр с ошибкой не показывается; повторять тот же
+    // снимок бессмысленно - он упадёт снова, поэтому следующий запрос ждёт изменения состояния.
+    public RuntimeException pollFailure() {
+        return failure.getAndSet(null);
+    }
+
+    public void releaseFrame(RenderTarget frame) {
+        if (frame != null) {
+            freeTargets.offer(frame);
+            // Поток отрисовки мог ждать свободный буфер
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void renderLoop() {
+        while (running) {
+            FrameRequest request = pendingRequest.getAndSet(null);
+            if (request == null) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            RenderTarget target = freeTargets.poll();
+            if (target == null) {
+                // Все буферы заняты: забираем непоказанный кадр, он всё равно устарел
+                target = readyFrame.getAndSet(null);
+                if (target == null) {
+                    // Буфер держит поток JavaFX: запрос возвращается в очередь, ждём releaseFrame
+                    pendingRequest.compareAndSet(null, request);
+                    LockSupport.park(this);
+                    continue;
+                }
+            }
+
+            try {
+                RenderEngine.renderFrame(target, request);
+            } catch (RuntimeException exception) {
+                failure.set(exception);
+                freeTargets.offer(target);
+                continue;
+            }
+
+            RenderTarget stale = readyFrame.getAndSet(target);
+            if (stale != null) {
+                freeTargets.offer(stale);
+            }
+        }
+    }
+}
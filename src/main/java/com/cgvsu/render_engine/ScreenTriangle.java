@@ -0,0 +1,179 @@
+package com.cgvsu.render_engine;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+// Треугольник после проекции, подготовленный к растеризации
+final class ScreenTriangle {
+    // Субпиксельная точность растеризации: 4 бита (1/16 пикселя)
+    static final int SUB_PIXEL_BITS = 4;
+    static final int SUB_PIXEL_SCALE = 1 << SUB_PIXEL_BITS;
+    static final int HALF_PIXEL = SUB_PIXEL_SCALE / 2;
+    // Предел экранных координат вершин, при котором рёберные функции не переполняются.
+    // Треугольники, выходящие за него, обрезаются по его границам на стадии отсечения.
+    static final float GUARD_BAND = 1 << 22;
+
+    // Глубина вершин
+    final float z0, z1, z2;
+    // Ближайшая глубина треугольника - для иерархического теста видимости
+    final float minDepth;
+    final int minX, minY, maxX, maxY;
+
+    // Рёберные функции E(p) = a * p.x + b * p.y + c в фиксированной точке,
+    // ориентированные так, что внутренность треугольника - E >= 0.
+    // Ребро i лежит напротив вершины i.
+    final long a0, b0, c0, a1, b1, c1, a2, b2, c2;
+    // Правило top-left: на "не top-left" рёбрах пиксель на самом ребре не закрашивается
+    final long threshold0, threshold1, threshold2;
+    final float invArea;
+    // Площадь на экране в пикселях
+    final float screenArea;
+    // Атрибуты вершин в плоском виде для шейдеров; читаются из буферов модели при подготовке
+    boolean hasUv;
+    float u0, v0, u1, v1, u2, v2;
+    boolean hasNormals;
+    float n0x, n0y, n0z, n1x, n1y, n1z, n2x, n2y, n2z;
+
+    // Заполняются при подготовке: номер исходного треугольника (для равенства глубин),
+    // mip-уровень текстуры, шейдер, освещённость вершин (Гуро)
+    int sourceIndex;
+    int mipLevel;
+    FragmentShader shader;
+    float intensity0, intensity1, intensity2;
+
+    private ScreenTriangle(long fx0, long fy0, long fx1, long fy1, long fx2, long fy2,
+                           float z0, float z1, float z2, long area,
+                           int minX, int minY, int maxX, int maxY) {
+        this.z0 = z0;
+        this.z1 = z1;
+        this.z2 = z2;
+        this.minDepth = Math.min(z0, Math.min(z1, z2));
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+
+        long sign = area > 0 ? 1 : -1;
+        a0 = sign * (fy2 - fy1);
+        b0 = sign * (fx1 - fx2);
+        c0 = sign * (fy1 * (fx2 - fx1) - fx1 * (fy2 - fy1));
+        a1 = sign * (fy0 - fy2);
+        b1 = sign * (fx2 - fx0);
+        c1 = sign * (fy2 * (fx0 - fx2) - fx2 * (fy0 - fy2));
+        a2 = sign * (fy1 - fy0);
+        b2 = sign * (fx0 - fx1);
+        c2 = sign * (fy0 * (fx1 - fx0) - fx0 * (fy1 - fy0));
+
+        threshold0 = isTopLeft(a0, b0) ? 0 : 1;
+        threshold1 = isTopLeft(a1, b1) ? 0 : 1;
+        threshold2 = isTopLeft(a2, b2) ? 0 : 1;
+        invArea = 1.0f / (sign * area);
+        screenArea = (sign * area) * 0.5f / (SUB_PIXEL_SCALE * SUB_PIXEL_SCALE);
+    }
+
+    // Текстурные координаты вершин: номера пар в coords - indices[offset .. offset + 2]
+    void setUv(FloatBuffer coords, IntBuffer indices, int offset) {
+        int t0 = indices.get(offset) * 2;
+        int t1 = indices.get(offset + 1) * 2;
+        int t2 = indices.get(offset + 2) * 2;
+        u0 = coords.get(t0); v0 = coords.get(t0 + 1);
+        u1 = coords.get(t1); v1 = coords.get(t1 + 1);
+        u2 = coords.get(t2); v2 = coords.get(t2 + 1);
+        hasUv = true;
+    }
+
+    // Для треугольника, вырезанного из исходного при отсечении: вершина k - смесь вершин исходного
+    // треугольника с барицентрическими координатами weights[base_k .. base_k + 2]
+    void setUv(FloatBuffer coords, IntBuffer indices, int offset,
+               float[] weights, int base0, int base1, int base2) {
+        setUv(coords, indices, offset);
+        float su0 = u0, sv0 = v0, su1 = u1, sv1 = v1, su2 = u2, sv2 = v2;
+        u0 = blend(weights, base0, su0, su1, su2); v0 = blend(weights, base0, sv0, sv1, sv2);
+        u1 = blend(weights, base1, su0, su1, su2); v1 = blend(weights, base1, sv0, sv1, sv2);
+        u2 = blend(weights, base2, su0, su1, su2); v2 = blend(weights, base2, sv0, sv1, sv2);
+    }
+
+    // Нормали вершин: номера троек в coords - indices[offset .. offset + 2]
+    void setNormals(FloatBuffer coords, IntBuffer indices, int offset) {
+        int m0 = indices.get(offset) * 3;
+        int m1 = indices.get(offset + 1) * 3;
+        int m2 = indices.get(offset + 2) * 3;
+        n0x = coords.get(m0); n0y = coords.get(m0 + 1); n0z = coords.get(m0 + 2);
+        n1x = coords.get(m1); n1y = coords.get(m1 + 1); n1z = coords.get(m1 + 2);
+        n2x = coords.get(m2); n2y = coords.get(m2 + 1); n2z = coords.get(m2 + 2);
+        hasNormals = true;
+    }
+
+    void setNormals(FloatBuffer coords, IntBuffer indices, int offset,
+                    float[] weights, int base0, int base1, int base2) {
+        setNormals(coords, indices, offset);
+        float ax = n0x, ay = n0y, az = n0z, bx = n1x, by = n1y, bz = n1z, cx = n2x, cy = n2y, cz = n2z;
+        n0x = blend(weights, base0, ax, bx, cx); n0y = blend(weights, base0, ay, by, cy);
+        n0z = blend(weights, base0, az, bz, cz);
+        n1x = blend(weights, base1, ax, bx, cx); n1y = blend(weights, base1, ay, by, cy);
+        n1z = blend(weights, base1, az, bz, cz);
+        n2x = blend(weights, base2, ax, bx, cx); n2y = blend(weights, base2, ay, by, cy);
+        n2z = blend(weights, base2, az, bz, cz);
+    }
+
+    private static float blend(float[] weights, int base, float a, float b, float c) {
+        return weights[base] * a + weights[base + 1] * b + weights[base + 2] * c;
+    }
+
+    // Площадь треугольника в пространстве UV
+    float uvArea() {
+        return Math.abs((u1 - u0) * (v2 - v0) - (u2 - u0) * (v1 - v0)) * 0.5f;
+    }
+
+    // Треугольник по экранным координатам и глубине вершин, без атрибутов (см. setUv, setNormals).
+    // Вершины должны лежать внутри guard band (с точностью до округления при отсечении).
+    // Возвращает null, если треугольник вне экрана, вырожден или координаты не конечны
+    static ScreenTriangle create(float x0, float y0, float z0,
+                                 float x1, float y1, float z1,
+                                 float x2, float y2, float z2,
+                                 int width, int height) {
+        // Нахождение bounding box
+        int minX = (int) Math.max(0, Math.floor(Math.min(x0, Math.min(x1, x2))));
+        int maxX = (int) Math.min(width - 1, Math.ceil(Math.max(x0, Math.max(x1, x2))));
+        int minY = (int) Math.max(0, Math.floor(Math.min(y0, Math.min(y1, y2))));
+        int maxY = (int) Math.min(height - 1, Math.ceil(Math.max(y0, Math.max(y1, y2))));
+
+        if (minX > maxX || minY > maxY) {
+            return null;
+        }
+
+        if (!(isFinite(x0, y0) && isFinite(x1, y1) && isFinite(x2, y2))) {
+            return null;
+        }
+
+        // Перевод в фиксированную точку
+        long fx0 = Math.round(x0 * SUB_PIXEL_SCALE);
+        long fy0 = Math.round(y0 * SUB_PIXEL_SCALE);
+        long fx1 = Math.round(x1 * SUB_PIXEL_SCALE);
+        long fy1 = Math.round(y1 * SUB_PIXEL_SCALE);
+        long fx2 = Math.round(x2 * SUB_PIXEL_SCALE);
+        long fy2 = Math.round(y2 * SUB_PIXEL_SCALE);
+
+        long area = (fx2 - fx0) * (fy1 - fy0) - (fy2 - fy0) * (fx1 - fx0);
+        if (area == 0) {
+            return null;
+        }
+
+        return new ScreenTriangle(fx0, fy0, fx1, fy1, fx2, fy2, z0, z1, z2, area,
+                minX, minY, maxX, maxY);
+    }
+
+    static boolean insideGuardBand(float x, float y) {
+        return Math.abs(x) <= GUARD_BAND && Math.abs(y) <= GUARD_BAND;
+    }
+
+    private static boolean isFinite(float x, float y) {
+        return Float.isFinite(x) && Float.isFinite(y);
+    }
+
+    // Ось Y направлена вниз: левое ребро - градиент внутрь по +x,
+    // верхнее - горизонтальное ребро с градиентом по +y
+    private static boolean isTopLeft(long a, long b) {
+        return a > 0 || (a == 0 && b > 0);
+    }
+}
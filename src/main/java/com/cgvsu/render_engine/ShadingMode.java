@@ -0,0 +1,8 @@
+package com.cgvsu.render_engine;
+
+public enum ShadingMode {
+    // Закраска сразу при растеризации (каждый прошедший тест глубины фрагмент)
+    FORWARD,
+    // Сначала только видимость в G-буфер, затем ровно одна закраска на видимый пиксель
+    DEFERRED
+}
@@ -0,0 +1,141 @@
+package com.cgvsu.render_engine;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+
+// Текстура, один раз декодированная в упакованные ARGB-массивы с полной цепочкой mip-уровней.
+// После создания не зависит от JavaFX и безопасна для чтения из нескольких потоков.
+public final class Texture {
+    private final int[][] levels;
+    private final int[] widths;
+    private final int[] heights;
+
+    private Texture(int[][] levels, int[] widths, int[] heights) {
+        this.levels = levels;
+        this.widths = widths;
+        this.heights = heights;
+    }
+
+    public static Texture fromImage(Image image) {
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Texture image is empty");
+        }
+
+        PixelReader reader = image.getPixelReader();
+        if (reader == null) {
+            throw new IllegalArgumentException("Texture image is not readable");
+        }
+        int[] base = new int[width * height];
+        reader.getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), base, 0, width);
+        return fromPixels(base, width, height);
+    }
+
+    // pixels - неpremultiplied ARGB, по строкам
+    public static Texture fromPixels(int[] pixels, int width, int height) {
+        int levelCount = 1;
+        for (int w = width, h = height; w > 1 || h > 1; w = Math.max(1, w / 2), h = Math.max(1, h / 2)) {
+            levelCount++;
+        }
+
+        int[][] levels = new int[levelCount][];
+        int[] widths = new int[levelCount];
+        int[] heights = new int[levelCount];
+        levels[0] = pixels;
+        widths[0] = width;
+        heights[0] = height;
+
+        for (int level = 1; level < levelCount; level++) {
+            widths[level] = Math.max(1, widths[level - 1] / 2);
+            heights[level] = Math.max(1, heights[level - 1] / 2);
+            levels[level] = downsample(levels[level - 1], widths[level - 1], heights[level - 1],
+                    widths[level], heights[level]);
+        }
+
+        return new Texture(levels, widths, heights);
+    }
+
+    // Усреднение блока 2x2 (у нечётной стороны крайний тексель повторяется)
+    private static int[] downsample(int[] source, int sourceWidth, int sourceHeight,
+                                    int width, int height) {
+        int[] result = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int y0 = Math.min(sourceHeight - 1, y * 2);
+            int y1 = Math.min(sourceHeight - 1, y * 2 + 1);
+            for (int x = 0; x < width; x++) {
+                int x0 = Math.min(sourceWidth - 1, x * 2);
+                int x1 = Math.min(sourceWidth - 1, x * 2 + 1);
+                int c00 = source[y0 * sourceWidth + x0];
+                int c10 = source[y0 * sourceWidth + x1];
+                int c01 = source[y1 * sourceWidth + x0];
+                int c11 = source[y1 * sourceWidth + x1];
+                result[y * width + x] = PackedColor.pack(
+                        (PackedColor.alpha(c00) + PackedColor.alpha(c10) + PackedColor.alpha(c01) + PackedColor.alpha(c11) + 2) >> 2,
+                        (PackedColor.red(c00) + PackedColor.red(c10) + PackedColor.red(c01) + PackedColor.red(c11) + 2) >> 2,
+                        (PackedColor.green(c00) + PackedColor.green(c10) + PackedColor.green(c01) + PackedColor.green(c11) + 2) >> 2,
+                        (PackedColor.blue(c00) + PackedColor.blue(c10) + PackedColor.blue(c01) + PackedColor.blue(c11) + 2) >> 2);
+            }
+        }
+        return result;
+    }
+
+    // Уровень детализации по отношению площади треугольника в текселях базового уровня
+    // к его площади в пикселях экрана (производные UV по экрану, усреднённые по треугольнику)
+    public int selectLevel(float uvArea, float screenArea) {
+        if (!(screenArea > 0) || !(uvArea > 0)) {
+            return 0;
+        }
+        float texelArea = uvArea * widths[0] * heights[0];
+        float lod = 0.5f * (float) (Math.log(texelArea / screenArea) / Math.log(2));
+        int level = Math.round(lod);
+        return Math.max(0, Math.min(levels.length - 1, level));
+    }
+
+    // Цвет в точке (u, v); v направлена вверх, как в OBJ. Возвращает неpremultiplied ARGB.
+    public int sample(float u, float v, int level, TextureFilter filter) {
+        int width = widths[level];
+        int height = heights[level];
+        int[] texels = levels[level];
+
+        float x = u * (width - 1);
+        float y = (1 - v) * (height - 1);
+
+        if (filter == TextureFilter.NEAREST) {
+            int texX = Math.max(0, Math.min((int) x, width - 1));
+            int texY = Math.max(0, Math.min((int) y, height - 1));
+            return texels[texY * width + texX];
+        }
+
+        x = Math.max(0.0f, Math.min(x, width - 1));
+        y = Math.max(0.0f, Math.min(y, height - 1));
+        int x0 = (int) x;
+        int y0 = (int) y;
+        int x1 = Math.min(x0 + 1, width - 1);
+        int y1 = Math.min(y0 + 1, height - 1);
+        float fx = x - x0;
+        float fy = y - y0;
+
+        int c00 = texels[y0 * width + x0];
+        int c10 = texels[y0 * width + x1];
+        int c01 = texels[y1 * width + x0];
+        int c11 = texels[y1 * width + x1];
+
+        return PackedColor.pack(
+                lerpChannel(PackedColor.alpha(c00), PackedColor.alpha(c10), PackedColor.alpha(c01), PackedColor.alpha(c11), fx, fy),
+                lerpChannel(PackedColor.red(c00), PackedColor.red(c10), PackedColor.red(c01), PackedColor.red(c11), fx, fy),
+                lerpChannel(PackedColor.green(c00), PackedColor.green(c10), PackedColor.green(c01), PackedColor.green(c11), fx, fy),
+                lerpChannel(PackedColor.blue(c00), PackedColor.blue(c10), PackedColor.blue(c01), PackedColor.blue(c11), fx, fy));
+    }
+
+    private static int lerpChannel(int c00, int c10, int c01, int c11, float fx, float fy) {
+        float top = c00 + (c10 - c00) * fx;
+        float bottom = c01 + (c11 - c01) * fx;
+        return (int) (top + (bottom - top) * fy + 0.5f);
+    }
+
+    public int getLevelCount() { return levels.length; }
+    public int getWidth(int level) { return widths[level]; }
+    public int getHeight(int level) { return heights[level]; }
+}
@@ -0,0 +1,50 @@
+package com.cgvsu.render_engine;
+
+import javafx.scene.image.Image;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// LRU-кэш декодированных текстур. Ключ - сам объект Image (сравнение по ссылке),
+// поэтому при изменении пикселей WritableImage запись нужно сбросить через invalidate.
+public class TextureCache {
+    private final int capacity;
+    private final LinkedHashMap<Image, Texture> entries;
+
+    public TextureCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Texture cache capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Image, Texture> eldest) {
+                return size() > TextureCache.this.capacity;
+            }
+        };
+    }
+
+    public synchronized Texture get(Image image) {
+        if (image == null) {
+            return null;
+        }
+        Texture texture = entries.get(image);
+        if (texture == null) {
+            texture = Texture.fromImage(image);
+            entries.put(image, texture);
+        }
+        return texture;
+    }
+
+    public synchronized void invalidate(Image image) {
+        entries.remove(image);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,8 @@
+package com.cgvsu.render_engine;
+
+public enum TextureFilter {
+    // Ближайший тексель выбранного mip-уровня
+    NEAREST,
+    // Билинейная интерполяция четырёх текселей выбранного mip-уровня
+    BILINEAR
+}
@@ -0,0 +1,192 @@
+package com.cgvsu.render_engine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Тайловый растеризатор: треугольники раскладываются по экранным тайлам,
+// тайлы растеризуются параллельно в work-stealing пуле. Каждый тайл пишет
+// только в свои пиксели буфера кадра и Z-буфера, поэтому блокировки не нужны.
+// Внутри тайла треугольники обходятся в исходном порядке, так что результат
+// совпадает с однопоточной отрисовкой попиксельно.
+public class TileRasterizer {
+    public static final int TILE_SIZE = 64;
+
+    @FunctionalInterface
+    public interface TriangleRasterizer {
+        // Растеризация треугольника triangleIndex только внутри прямоугольника [minX..maxX] x [minY..maxY]
+        void rasterize(int triangleIndex, int minX, int minY, int maxX, int maxY);
+    }
+
+    private final int workerCount;
+    private final ForkJoinPool pool;
+    // Кадры, которые сейчас работают на этом пуле; после shutdown пул останавливается вместе с последним
+    private final AtomicInteger activeFrames = new AtomicInteger();
+    private volatile boolean retired;
+
+    public TileRasterizer(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1");
+        }
+        this.workerCount = workerCount;
+        this.pool = workerCount > 1 ? new ForkJoinPool(workerCount) : null;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    // Пул потоков для других стадий кадра; null в однопоточном режиме
+    ForkJoinPool getPool() {
+        return pool;
+    }
+
+    // bounds: по 4 значения на треугольник (minX, minY, maxX, maxY), уже обрезанные по экрану.
+    // Треугольники с minX > maxX или minY > maxY пропускаются.
+    public void rasterize(int triangleCount, int[] bounds,
+                          int width, int height,
+                          TriangleRasterizer rasterizer) {
+        if (triangleCount == 0 || width <= 0 || height <= 0) {
+            return;
+        }
+
+        int tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+        int tileCount = tilesX * tilesY;
+
+        // Биннинг в два прохода: подсчёт, затем заполнение (CSR-раскладка)
+        int[] tileOffsets = new int[tileCount + 1];
+        for (int t = 0; t < triangleCount; t++) {
+            int b = t * 4;
+            if (bounds[b] > bounds[b + 2] || bounds[b + 1] > bounds[b + 3]) {
+                continue;
+            }
+            for (int ty = bounds[b + 1] / TILE_SIZE; ty <= bounds[b + 3] / TILE_SIZE; ty++) {
+                for (int tx = bounds[b] / TILE_SIZE; tx <= bounds[b + 2] / TILE_SIZE; tx++) {
+                    tileOffsets[ty * tilesX + tx + 1]++;
+                }
+            }
+        }
+        for (int i = 0; i < tileCount; i++) {
+            tileOffsets[i + 1] += tileOffsets[i];
+        }
+
+        int[] tileTriangles = new int[tileOffsets[tileCount]];
+        int[] cursor = new int[tileCount];
+        System.arraycopy(tileOffsets, 0, cursor, 0, tileCount);
+        for (int t = 0; t < triangleCount; t++) {
+            int b = t * 4;
+            if (bounds[b] > bounds[b + 2] || bounds[b + 1] > bounds[b + 3]) {
+                continue;
+            }
+            for (int ty = bounds[b + 1] / TILE_SIZE; ty <= bounds[b + 3] / TILE_SIZE; ty++) {
+                for (int tx = bounds[b] / TILE_SIZE; tx <= bounds[b + 2] / TILE_SIZE; tx++) {
+                    tileTriangles[cursor[ty * tilesX + tx]++] = t;
+                }
+            }
+        }
+
+        TileTask root = new TileTask(0, tileCount, tilesX, width, height,
+                tileOffsets, tileTriangles, bounds, rasterizer);
+        if (pool == null) {
+            root.renderRange();
+        } else {
+            pool.invoke(root);
+        }
+    }
+
+    // Захват на время кадра. false - растеризатор уже выведен из работы, кадр должен взять новый
+    boolean acquire() {
+        activeFrames.incrementAndGet();
+        if (retired) {
+            release();
+            return false;
+        }
+        return true;
+    }
+
+    void release() {
+        if (activeFrames.decrementAndGet() == 0 && retired) {
+            shutdownPool();
+        }
+    }
+
+    // Пул останавливается сразу или, если кадр ещё считается, после его завершения
+    public void shutdown() {
+        retired = true;
+        if (activeFrames.get() == 0) {
+            shutdownPool();
+        }
+    }
+
+    private void shutdownPool() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static final class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int tilesX;
+        private final int width;
+        private final int height;
+        private final int[] tileOffsets;
+        private final int[] tileTriangles;
+        private final int[] bounds;
+        private final TriangleRasterizer rasterizer;
+
+        TileTask(int from, int to, int tilesX, int width, int height,
+                 int[] tileOffsets, int[] tileTriangles, int[] bounds,
+                 TriangleRasterizer rasterizer) {
+            this.from = from;
+            this.to = to;
+            this.tilesX = tilesX;
+            this.width = width;
+            this.height = height;
+            this.tileOffsets = tileOffsets;
+            this.tileTriangles = tileTriangles;
+            this.bounds = bounds;
+            this.rasterizer = rasterizer;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                renderRange();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(
+                    new TileTask(from, mid, tilesX, width, height, tileOffsets, tileTriangles, bounds, rasterizer),
+                    new TileTask(mid, to, tilesX, width, height, tileOffsets, tileTriangles, bounds, rasterizer));
+        }
+
+        void renderRange() {
+            for (int tile = from; tile < to; tile++) {
+                int start = tileOffsets[tile];
+                int end = tileOffsets[tile + 1];
+                if (start == end) {
+                    continue;
+                }
+
+                int tileMinX = (tile % tilesX) * TILE_SIZE;
+                int tileMinY = (tile / tilesX) * TILE_SIZE;
+                int tileMaxX = Math.min(width - 1, tileMinX + TILE_SIZE - 1);
+                int tileMaxY = Math.min(height - 1, tileMinY + TILE_SIZE - 1);
+
+                for (int i = start; i < end; i++) {
+                    int t = tileTriangles[i];
+                    int b = t * 4;
+                    rasterizer.rasterize(t,
+                            Math.max(tileMinX, bounds[b]),
+                            Math.max(tileMinY, bounds[b + 1]),
+                            Math.min(tileMaxX, bounds[b + 2]),
+                            Math.min(tileMaxY, bounds[b + 3]));
+                }
+            }
+        }
+    }
+}
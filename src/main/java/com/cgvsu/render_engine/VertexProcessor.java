@@ -0,0 +1,165 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.Matrix4f;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// Стадия обработки вершин: каждая вершина модели преобразуется ровно один раз за кадр
+// в плоские массивы экранных координат и глубины. Треугольники читают их по индексу.
+// Однородные координаты и коды отсечения сохраняются для стадии отсечения.
+public class VertexProcessor {
+    // Меньше этого числа вершин параллелить невыгодно
+    private static final int PARALLEL_THRESHOLD = 1 << 15;
+    private static final int CHUNK_SIZE = 1 << 13;
+
+    private float[] screenX = new float[0];
+    private float[] screenY = new float[0];
+    private float[] depth = new float[0];
+    private float[] clipX = new float[0];
+    private float[] clipY = new float[0];
+    private float[] clipZ = new float[0];
+    private float[] clipW = new float[0];
+    private int[] outcodes = new int[0];
+    // Номер кадра processClusters, в котором вершина уже преобразована
+    private int[] stamps = new int[0];
+    private int generation;
+    private int vertexCount;
+    private float nearPlane;
+    private float farPlane;
+
+    // Все вершины модели: vertices - координаты подряд, по 3 на вершину (Model.getVertexCoordinates)
+    public void process(FloatBuffer vertices, int vertexCount, Matrix4f transformMatrix,
+                        int width, int height, float nearPlane, float farPlane,
+                        ForkJoinPool pool) {
+        prepare(vertexCount, nearPlane, farPlane);
+
+        float[] m = transformMatrix.m;
+        if (pool == null || vertexCount < PARALLEL_THRESHOLD) {
+            transformRange(vertices, m, width, height, 0, vertexCount);
+            return;
+        }
+
+        int chunkCount = (vertexCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        pool.submit(() -> IntStream.range(0, chunkCount).parallel().forEach(chunk ->
+                transformRange(vertices, m, width, height,
+                        chunk * CHUNK_SIZE, Math.min(vertexCount, (chunk + 1) * CHUNK_SIZE))
+        )).join();
+    }
+
+    // Только вершины видимых кластеров: clusters[0..clusterCount) - номера кластеров,
+    // их вершины - clusterVertices[clusterVertexOffsets[c] .. clusterVertexOffsets[c + 1]).
+    // Данные остальных вершин в этом кадре не обновляются. Вершина на стыке кластеров
+    // преобразуется один раз: её отметка сравнивается с номером кадра. Параллельные потоки
+    // могут обработать её одновременно - с тем же результатом, поэтому запись безопасна.
+    public void processClusters(FloatBuffer vertices, int vertexCount, Matrix4f transformMatrix,
+                                int width, int height, float nearPlane, float farPlane,
+                                IntBuffer clusterVertices, int[] clusterVertexOffsets,
+                                int[] clusters, int clusterCount,
+                                ForkJoinPool pool) {
+        prepare(vertexCount, nearPlane, farPlane);
+        if (++generation == 0) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+
+        float[] m = transformMatrix.m;
+        int total = 0;
+        for (int i = 0; i < clusterCount; i++) {
+            total += clusterVertexOffsets[clusters[i] + 1] - clusterVertexOffsets[clusters[i]];
+        }
+        if (pool == null || total < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < clusterCount; i++) {
+                transformIndexed(vertices, m, width, height, clusterVertices,
+                        clusterVertexOffsets[clusters[i]], clusterVertexOffsets[clusters[i] + 1]);
+            }
+            return;
+        }
+
+        pool.submit(() -> IntStream.range(0, clusterCount).parallel().forEach(i ->
+                transformIndexed(vertices, m, width, height, clusterVertices,
+                        clusterVertexOffsets[clusters[i]], clusterVertexOffsets[clusters[i] + 1])
+        )).join();
+    }
+
+    private void prepare(int vertexCount, float nearPlane, float farPlane) {
+        this.vertexCount = vertexCount;
+        this.nearPlane = nearPlane;
+        this.farPlane = farPlane;
+        if (screenX.length < vertexCount) {
+            screenX = new float[vertexCount];
+            screenY = new float[vertexCount];
+            depth = new float[vertexCount];
+            clipX = new float[vertexCount];
+            clipY = new float[vertexCount];
+            clipZ = new float[vertexCount];
+            clipW = new float[vertexCount];
+            outcodes = new int[vertexCount];
+            stamps = new int[vertexCount];
+        }
+    }
+
+    private void transformRange(FloatBuffer vertices, float[] m,
+                                int width, int height, int from, int to) {
+        for (int i = from; i < to; i++) {
+            transformVertex(vertices, i, m, width, height);
+        }
+    }
+
+    private void transformIndexed(FloatBuffer vertices, float[] m,
+                                  int width, int height, IntBuffer indices, int from, int to) {
+        int[] stamps = this.stamps;
+        int generation = this.generation;
+        for (int k = from; k < to; k++) {
+            int i = indices.get(k);
+            if (stamps[i] == generation) {
+                continue;
+            }
+            stamps[i] = generation;
+            transformVertex(vertices, i, m, width, height);
+        }
+    }
+
+    // Та же арифметика, что в GraphicConveyor.multiplyMatrix4ByVector3 и vertexToPoint,
+    // но без создания Vector3f/Vector2f на каждую вершину
+    private void transformVertex(FloatBuffer vertices, int i, float[] m, int width, int height) {
+        float vx = vertices.get(i * 3);
+        float vy = vertices.get(i * 3 + 1);
+        float vz = vertices.get(i * 3 + 2);
+        float x = (vx * m[0]) + (vy * m[4]) + (vz * m[8]) + m[12];
+        float y = (vx * m[1]) + (vy * m[5]) + (vz * m[9]) + m[13];
+        float z = (vx * m[2]) + (vy * m[6]) + (vz * m[10]) + m[14];
+        float w = (vx * m[3]) + (vy * m[7]) + (vz * m[11]) + m[15];
+
+        clipX[i] = x;
+        clipY[i] = y;
+        clipZ[i] = z;
+        clipW[i] = w;
+        outcodes[i] = GraphicConveyor.computeOutcode(x, y, w, nearPlane, farPlane);
+
+        if (w != 0.0f && w != 1.0f) {
+            x /= w;
+            y /= w;
+            z /= w;
+        }
+
+        screenX[i] = (x + 1.0f) * 0.5f * width;
+        screenY[i] = (1.0f - y) * 0.5f * height;
+        depth[i] = z;
+    }
+
+    public int getVertexCount() { return vertexCount; }
+    public float[] getScreenX() { return screenX; }
+    public float[] getScreenY() { return screenY; }
+    public float[] getDepth() { return depth; }
+    public float[] getClipX() { return clipX; }
+    public float[] getClipY() { return clipY; }
+    public float[] getClipZ() { return clipZ; }
+    public float[] getClipW() { return clipW; }
+    public int[] getOutcodes() { return outcodes; }
+    public float getNearPlane() { return nearPlane; }
+    public float getFarPlane() { return farPlane; }
+}
@@ -1,37 +1,155 @@
 package com.cgvsu.render_engine;
 
+import java.util.Arrays;
+
 public class ZBuffer {
-    private final float[][] buffer;
+    public enum DepthMode {
+        // Обычный тест: побеждает меньший z
+        STANDARD,
+        // Глубина квантуется в 24-битное целое, как в аппаратных буферах D24
+        QUANTIZED_24
+    }
+
+    private static final float QUANTIZED_MAX = (1 << 24) - 1;
+
+    // Плоский массив по строкам: индекс = y * width + x
+    private final float[] buffer;
+    // Номер "поколения" для каждого пикселя; значение действительно, только если совпадает с текущим
+    private final int[] generations;
+    // Номер исходного треугольника, записавшего глубину. При точном равенстве глубин побеждает
+    // меньший номер - как при отрисовке в порядке файла, независимо от порядка кластеров в кадре
+    private final int[] owners;
     private final int width;
     private final int height;
+    private final DepthMode depthMode;
+    private final float clearValue;
+    private int generation;
 
     public ZBuffer(int width, int height) {
+        this(width, height, DepthMode.STANDARD);
+    }
+
+    public ZBuffer(int width, int height, DepthMode depthMode) {
         this.width = width;
         this.height = height;
-        this.buffer = new float[width][height];
-        clear();
+        this.depthMode = depthMode;
+        this.buffer = new float[width * height];
+        this.generations = new int[width * height];
+        this.owners = new int[width * height];
+        this.clearValue = switch (depthMode) {
+            case STANDARD -> Float.MAX_VALUE;
+            case QUANTIZED_24 -> QUANTIZED_MAX + 1;
+        };
+        this.generation = 1;
     }
 
+    // Очистка за O(1): достаточно сменить поколение
     public void clear() {
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                buffer[x][y] = Float.MAX_VALUE;
+        generation++;
+        if (generation == 0) {
+            // Переполнение счётчика - раз в 2^32 кадров сбрасываем метки целиком
+            Arrays.fill(generations, 0);
+            generation = 1;
+        }
+    }
+
+    // owner - номер исходного треугольника фрагмента (разрешает равенство глубин)
+    public boolean shouldDraw(int x, int y, float z, int owner) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return false;
+        }
+
+        int index = y * width + x;
+        boolean written = generations[index] == generation;
+        float stored = written ? buffer[index] : clearValue;
+
+        switch (depthMode) {
+            case QUANTIZED_24: {
+                float key = quantize(z);
+                if (key < stored || (written && key == stored && owner < owners[index])) {
+                    write(index, key, owner);
+                    return true;
+                }
+                return false;
             }
+            default:
+                if (z < stored || (written && z == stored && owner < owners[index])) {
+                    write(index, z, owner);
+                    return true;
+                }
+                return false;
+        }
+    }
+
+    // Проверка без записи: точка не дальше сохранённой глубины с допуском tolerance
+    // (в единицах z). Нужна для линий контура поверх уже закрашенных треугольников.
+    public boolean passesDepthTest(int x, int y, float z, float tolerance) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return false;
+        }
+
+        int index = y * width + x;
+        float stored = generations[index] == generation ? buffer[index] : clearValue;
+
+        switch (depthMode) {
+            case QUANTIZED_24:
+                return quantize(z) <= stored + tolerance * 0.5f * QUANTIZED_MAX;
+            default:
+                return z <= stored + tolerance;
         }
     }
 
-    public boolean shouldDraw(int x, int y, float z) {
+    // Глубина точки совпадает с записанной в этом кадре тем же треугольником
+    // (для закраски после прохода только по глубине)
+    public boolean matchesDepth(int x, int y, float z, int owner) {
         if (x < 0 || x >= width || y < 0 || y >= height) {
             return false;
         }
 
-        if (z < buffer[x][y]) {
-            buffer[x][y] = z;
-            return true;
+        int index = y * width + x;
+        if (generations[index] != generation) {
+            return false;
+        }
+        float key = switch (depthMode) {
+            case QUANTIZED_24 -> quantize(z);
+            default -> z;
+        };
+        return buffer[index] == key && owners[index] == owner;
+    }
+
+    // Верхняя оценка глубины (в единицах z), которую хранит пиксель:
+    // точка дальше этой оценки гарантированно не пройдёт тест. Для пустого пикселя - Float.MAX_VALUE.
+    float getDepthBound(int x, int y) {
+        int index = y * width + x;
+        if (generations[index] != generation) {
+            return Float.MAX_VALUE;
+        }
+        float stored = buffer[index];
+        return switch (depthMode) {
+            case QUANTIZED_24 -> (stored + 0.5f) / QUANTIZED_MAX * 2.0f - 1.0f;
+            default -> stored;
+        };
+    }
+
+    private void write(int index, float value, int owner) {
+        buffer[index] = value;
+        owners[index] = owner;
+        generations[index] = generation;
+    }
+
+    // [-1, 1] -> [0, 2^24 - 1]; целые до 2^24 точно представимы во float
+    private static float quantize(float z) {
+        float normalized = z * 0.5f + 0.5f;
+        if (!(normalized > 0.0f)) {
+            return 0.0f;
+        }
+        if (normalized >= 1.0f) {
+            return QUANTIZED_MAX;
         }
-        return false;
+        return (float) (int) (normalized * QUANTIZED_MAX + 0.5f);
     }
 
     public int getWidth() { return width; }
     public int getHeight() { return height; }
-}
\ No newline at end of file
+    public DepthMode getDepthMode() { return depthMode; }
+}
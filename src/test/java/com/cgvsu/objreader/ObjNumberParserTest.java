@@ -0,0 +1,173 @@
+package com.cgvsu.objreader;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Разбор из байтов должен совпадать с Float.parseFloat / Integer.parseInt побитно,
+// а на ошибочных токенах - бросать то же исключение с тем же сообщением
+class ObjNumberParserTest {
+    private static final String[] FLOAT_TOKENS = {
+            "0", "-0", "+0", "0.0", "-0.0", "00000", "000.000",
+            "1", "-1", "+1", "1.5", "-1.5", "+1.5", "123.456", "-987.654321",
+            ".5", "-.5", "+.5", "5.", "-5.", "+5.", "0.", ".0",
+            // Экспоненты
+            "1e0", "1e5", "1E5", "1e+5", "1e-5", "-1.5e-3", "+2.5E+10", ".5e1", "5.e-1",
+            "1e22", "1e-22", "1e23", "1e-23", "123456789e-30", "0.000001e6", "0e999999",
+            // Длинные мантиссы: больше 18 значащих цифр и больше 2^53
+            "3.14159265358979323846264338327950288",
+            "9007199254740993", "9007199254740992", "123456789012345678", "1234567890123456789",
+            "0.000000000000000000000000000000000000012345678901234567890",
+            "1.00000005960464477539062500000000000000001",
+            // Середины между соседними float: значение решает только точное округление
+            "16777217", "1.00000005960464477539062499", "1.000000059604644775390625",
+            "33554434", "33554435",
+            // Десятичное число рядом с серединой: double попадает ровно в середину,
+            // а приведение double -> float округлило бы не в ту сторону
+            "7.741832822018019E+33", "1.209695315272642e20", "120969531527264200000",
+            // Денормализованные и граница нормализованных
+            "1.4e-45", "1.4E-45", "7e-46", "7.1e-46", "1e-45", "1e-40", "-1e-40", "1e-46",
+            "1.17549435E-38", "1.1754942E-38", "2.5e-44",
+            // Переполнение и граница float
+            "3.4028235e38", "3.4028236e38", "3.40282357e38", "1e38", "1e39", "-1e39",
+            "1e1000", "1e-1000", "1e99999999999",
+            // Специальные значения и формы, которые обрабатывает только Float.parseFloat
+            "NaN", "-NaN", "Infinity", "-Infinity", "+Infinity", "0x1p3", "0X1.8P-2",
+            "1f", "1F", "1d", "1.5D",
+            // Ошибочные токены
+            "", "-", "+", ".", "-.", "e5", ".e5", "1e", "1e+", "1e-", "1.2.3", "1e5.5",
+            "--1", "+-1", "1-2", "abc", "1a", "1,5", "1 2", " 1", "1 ", "nan", "inf", "0x"
+    };
+
+    private static final String[] INT_TOKENS = {
+            "0", "-0", "+0", "1", "-1", "+7", "007", "-007",
+            "123456789", "-123456789", "999999999", "1000000000", "-1000000000",
+            "2147483647", "-2147483648", "2147483648", "-2147483649", "99999999999",
+            "0000000000001", "+0000000000",
+            "", "-", "+", "--1", "+-1", "1.0", "1e3", "1a", "a1", " 1", "1 ", "0x10", "1_000"
+    };
+
+    @Test
+    void floatTokensMatchFloatParseFloat() {
+        for (String token : FLOAT_TOKENS) {
+            assertFloatParity(token);
+        }
+    }
+
+    @Test
+    void intTokensMatchIntegerParseInt() {
+        for (String token : INT_TOKENS) {
+            assertIntParity(token);
+        }
+    }
+
+    // Кратчайшая десятичная запись случайных float, включая денормализованные
+    @Test
+    void randomFloatBitsRoundTrip() {
+        Random random = new Random(19);
+        for (int i = 0; i < 20000; i++) {
+            float value = Float.intBitsToFloat(random.nextInt());
+            assertFloatParity(Float.toString(value));
+            assertFloatParity(String.format(Locale.ROOT, "%.9e", value));
+        }
+    }
+
+    // Случайные десятичные записи: разная длина мантиссы, положение точки и экспонента
+    @Test
+    void randomDecimalTokensMatch() {
+        Random random = new Random(20);
+        for (int i = 0; i < 50000; i++) {
+            StringBuilder token = new StringBuilder();
+            int sign = random.nextInt(3);
+            if (sign == 1) {
+                token.append('-');
+            } else if (sign == 2) {
+                token.append('+');
+            }
+            int digits = 1 + random.nextInt(25);
+            int dot = random.nextInt(digits + 2) - 1;
+            for (int d = 0; d < digits; d++) {
+                if (d == dot) {
+                    token.append('.');
+                }
+                token.append((char) ('0' + random.nextInt(10)));
+            }
+            if (dot == digits) {
+                token.append('.');
+            }
+            if (random.nextBoolean()) {
+                token.append(random.nextBoolean() ? 'e' : 'E');
+                int exponent = random.nextInt(101) - 50;
+                if (exponent >= 0 && random.nextBoolean()) {
+                    token.append('+');
+                }
+                token.append(exponent);
+            }
+            assertFloatParity(token.toString());
+        }
+    }
+
+    // Короткие случайные строки из символов числа - в основном ошибочные токены
+    @Test
+    void randomMalformedTokensMatch() {
+        Random random = new Random(21);
+        String alphabet = "0123456789+-.eE";
+        for (int i = 0; i < 50000; i++) {
+            int length = random.nextInt(8);
+            StringBuilder token = new StringBuilder();
+            for (int c = 0; c < length; c++) {
+                token.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertFloatParity(token.toString());
+            assertIntParity(token.toString());
+        }
+    }
+
+    @Test
+    void randomIntTokensMatch() {
+        Random random = new Random(22);
+        for (int i = 0; i < 20000; i++) {
+            long value = random.nextInt(3) == 0 ? random.nextLong() % 100000000000L : random.nextInt();
+            assertIntParity(Long.toString(value));
+        }
+    }
+
+    // Токен разбирается внутри строки, чтобы проверить границы start / end
+    private static void assertFloatParity(String token) {
+        byte[] bytes = ("v " + token + " 9").getBytes(StandardCharsets.US_ASCII);
+        int start = 2;
+        int end = start + token.length();
+        float expected;
+        try {
+            expected = Float.parseFloat(token);
+        } catch (NumberFormatException e) {
+            NumberFormatException actual = assertThrows(NumberFormatException.class,
+                    () -> ObjNumberParser.parseFloat(bytes, start, end), token);
+            assertEquals(e.getMessage(), actual.getMessage(), token);
+            return;
+        }
+        assertEquals(Float.floatToRawIntBits(expected),
+                Float.floatToRawIntBits(ObjNumberParser.parseFloat(bytes, start, end)), token);
+    }
+
+    private static void assertIntParity(String token) {
+        byte[] bytes = ("f " + token + " 9").getBytes(StandardCharsets.US_ASCII);
+        int start = 2;
+        int end = start + token.length();
+        int expected;
+        try {
+            expected = Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            NumberFormatException actual = assertThrows(NumberFormatException.class,
+                    () -> ObjNumberParser.parseInt(bytes, start, end), token);
+            assertEquals(e.getMessage(), actual.getMessage(), token);
+            return;
+        }
+        assertEquals(expected, ObjNumberParser.parseInt(bytes, start, end), token);
+    }
+}
@@ -0,0 +1,236 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.Model;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Параллельный разбор должен давать то же, что последовательный: массивы сетки, сводку
+// нарушений с номерами строк и первую ошибку строгого режима
+class ParallelObjReaderTest {
+    // Блоков столько, чтобы файл резался на несколько кусков по MIN_CHUNK_SIZE
+    private static final int BLOCKS = 30000;
+    // Дальние относительные индексы: первые грани каждого куска ссылаются на предыдущий кусок
+    private static final int FAR_BLOCKS = 100;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void shutdownPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void lenientParseMatchesSequential() throws IOException {
+        // Нарушения по всему файлу - примеры каждого вида набираются из разных кусков
+        Path file = write(generate(0, null).text);
+
+        ObjMeshData sequential = parseSequential(file, ObjParsePolicy.LENIENT);
+        ObjMeshData parallel = parseParallel(file, ObjParsePolicy.LENIENT);
+
+        assertMeshEquals(sequential, parallel);
+        assertDiagnosticsEqual(sequential.diagnostics, parallel.diagnostics);
+        assertFalse(parallel.diagnostics.isEmpty());
+    }
+
+    // Нарушения только в конце файла: номера строк примеров сдвигаются на строки всех
+    // предыдущих кусков
+    @Test
+    void lateIssuesKeepLineNumbers() throws IOException {
+        Generated generated = generate(BLOCKS * 9 / 10, null);
+        Path file = write(generated.text);
+
+        ObjDiagnostics sequential = parseSequential(file, ObjParsePolicy.LENIENT).diagnostics;
+        ObjDiagnostics parallel = parseParallel(file, ObjParsePolicy.LENIENT).diagnostics;
+
+        assertDiagnosticsEqual(sequential, parallel);
+        assertEquals(generated.firstIssueLine, parallel.getExamples().get(0).getLineNumber());
+    }
+
+    @Test
+    void readParallelBuildsSameModel() throws IOException {
+        Path file = write(generate(0, null).text);
+
+        Model sequential = ObjReader.read(file);
+        Model parallel = ObjReader.readParallel(file, pool);
+
+        assertEquals(sequential.getVertexCount(), parallel.getVertexCount());
+        assertEquals(sequential.getTextureVertexCount(), parallel.getTextureVertexCount());
+        assertEquals(sequential.getNormalCount(), parallel.getNormalCount());
+        assertEquals(sequential.getPolygonCount(), parallel.getPolygonCount());
+        assertEquals(sequential.getVertexCoordinates(), parallel.getVertexCoordinates());
+        assertEquals(sequential.getTextureCoordinates(), parallel.getTextureCoordinates());
+        assertEquals(sequential.getNormalCoordinates(), parallel.getNormalCoordinates());
+        assertEquals(sequential.getPolygonOffsets(), parallel.getPolygonOffsets());
+        assertEquals(sequential.getPolygonVertexIndices(), parallel.getPolygonVertexIndices());
+        assertEquals(sequential.getPolygonTextureVertexIndices(), parallel.getPolygonTextureVertexIndices());
+        assertEquals(sequential.getPolygonNormalIndices(), parallel.getPolygonNormalIndices());
+    }
+
+    @Test
+    void strictErrorInLateChunkMatchesSequential() throws IOException {
+        Generated generated = generate(BLOCKS * 9 / 10, null);
+        Path file = write(generated.text);
+
+        String expected = assertThrows(ObjReaderException.class,
+                () -> parseSequential(file, ObjParsePolicy.STRICT)).getMessage();
+        String actual = assertThrows(ObjReaderException.class,
+                () -> parseParallel(file, ObjParsePolicy.STRICT)).getMessage();
+
+        assertEquals(expected, actual);
+        assertTrue(actual.contains("line: " + generated.firstIssueLine + "."), actual);
+    }
+
+    // Нечисловая координата - ошибка в любом режиме
+    @Test
+    void malformedLineInLateChunkMatchesSequential() throws IOException {
+        Generated generated = generate(BLOCKS, "v 1.0 abc 2.0");
+        Path file = write(generated.text);
+
+        for (ObjParsePolicy policy : ObjParsePolicy.values()) {
+            String expected = assertThrows(ObjReaderException.class,
+                    () -> parseSequential(file, policy)).getMessage();
+            String actual = assertThrows(ObjReaderException.class,
+                    () -> parseParallel(file, policy)).getMessage();
+
+            assertEquals(expected, actual, policy.name());
+            assertTrue(actual.contains("line: " + generated.malformedLine + "."), actual);
+        }
+    }
+
+    private static ObjMeshData parseSequential(Path file, ObjParsePolicy policy) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return ObjReader.parse(channel, policy, new ObjProgressCounter(ObjReadProgress.NONE, -1));
+        }
+    }
+
+    private ObjMeshData parseParallel(Path file, ObjParsePolicy policy) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Иначе ParallelObjReader молча перейдёт на последовательный разбор
+            assertTrue(channel.size() / ParallelObjReader.MIN_CHUNK_SIZE >= 4, "file must span several chunks");
+            return ParallelObjReader.parse(channel, pool, policy,
+                    new ObjProgressCounter(ObjReadProgress.NONE, channel.size()));
+        }
+    }
+
+    private static void assertMeshEquals(ObjMeshData expected, ObjMeshData actual) {
+        assertArrayEquals(Arrays.copyOf(expected.positions, expected.positionCount * 3),
+                Arrays.copyOf(actual.positions, actual.positionCount * 3));
+        assertArrayEquals(Arrays.copyOf(expected.textureCoordinates, expected.textureCoordinateCount * 2),
+                Arrays.copyOf(actual.textureCoordinates, actual.textureCoordinateCount * 2));
+        assertArrayEquals(Arrays.copyOf(expected.normals, expected.normalCount * 3),
+                Arrays.copyOf(actual.normals, actual.normalCount * 3));
+        assertArrayEquals(Arrays.copyOf(expected.faceOffsets, expected.faceCount + 1),
+                Arrays.copyOf(actual.faceOffsets, actual.faceCount + 1));
+        assertArrayEquals(Arrays.copyOf(expected.faceFlags, expected.faceCount),
+                Arrays.copyOf(actual.faceFlags, actual.faceCount));
+        assertArrayEquals(Arrays.copyOf(expected.cornerVertices, expected.cornerCount),
+                Arrays.copyOf(actual.cornerVertices, actual.cornerCount));
+        assertArrayEquals(Arrays.copyOf(expected.cornerTextureVertices, expected.cornerCount),
+                Arrays.copyOf(actual.cornerTextureVertices, actual.cornerCount));
+        assertArrayEquals(Arrays.copyOf(expected.cornerNormals, expected.cornerCount),
+                Arrays.copyOf(actual.cornerNormals, actual.cornerCount));
+    }
+
+    private static void assertDiagnosticsEqual(ObjDiagnostics expected, ObjDiagnostics actual) {
+        for (ObjIssue issue : ObjIssue.values()) {
+            assertEquals(expected.getCount(issue), actual.getCount(issue), issue.name());
+        }
+        List<ObjDiagnostics.Example> expectedExamples = expected.getExamples();
+        List<ObjDiagnostics.Example> actualExamples = actual.getExamples();
+        assertEquals(expectedExamples.size(), actualExamples.size());
+        for (int i = 0; i < expectedExamples.size(); i++) {
+            assertEquals(expectedExamples.get(i).getIssue(), actualExamples.get(i).getIssue());
+            assertEquals(expectedExamples.get(i).getLineNumber(), actualExamples.get(i).getLineNumber());
+            assertEquals(expectedExamples.get(i).getMessage(), actualExamples.get(i).getMessage());
+        }
+        assertEquals(expected.getReport(), actual.getReport());
+    }
+
+    private Path write(CharSequence text) throws IOException {
+        Path file = directory.resolve("model.obj");
+        Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static final class Generated {
+        final StringBuilder text = new StringBuilder();
+        int lineCount;
+        int firstIssueLine;
+        int malformedLine;
+
+        // Часть строк с "\r\n", чтобы границы кусков попадали и на такие разделители
+        int line(String line) {
+            text.append(line).append(lineCount % 7 == 0 ? "\r\n" : "\n");
+            return ++lineCount;
+        }
+    }
+
+    // Блок: 3 вершины, 3 текстурные координаты, нормаль и грани с относительными индексами.
+    // Нарушения в гранях начинаются с блока issuesFrom; malformedLine (если задана)
+    // вставляется на 90% файла
+    private static Generated generate(int issuesFrom, String malformedLine) {
+        String[] issues = {
+                "f 1 2",
+                "f 1 0 2",
+                "f 1/x 2 3",
+                "f 1/1 2 3/3",
+                "f 1//1 2 3//1",
+                "f -1/-1/-1 -2/-2/-1"
+        };
+        Random random = new Random(20);
+        Generated generated = new Generated();
+        generated.line("# parity model");
+        for (int block = 0; block < BLOCKS; block++) {
+            for (int i = 0; i < 3; i++) {
+                generated.line(String.format(Locale.ROOT, "v %.6f %.6f %.6f",
+                        random.nextFloat() * 20 - 10, random.nextFloat() * 20 - 10, random.nextFloat() * 20 - 10));
+            }
+            for (int i = 0; i < 3; i++) {
+                generated.line(String.format(Locale.ROOT, "vt %.5f %.5f", random.nextFloat(), random.nextFloat()));
+            }
+            generated.line(String.format(Locale.ROOT, "vn %.4f %.4f %.4f",
+                    random.nextFloat(), random.nextFloat(), random.nextFloat()));
+            generated.line("f -3/-3/-1 -2/-2/-1 -1/-1/-1");
+            if (block >= FAR_BLOCKS) {
+                generated.line("f " + (block * 3 + 1) + "/1 -150/-150 -"
+                        + (FAR_BLOCKS * 3) + "/-" + (FAR_BLOCKS * 3) + " -2/-2");
+                generated.line("f -1//-" + FAR_BLOCKS + " -200//-50 -" + (FAR_BLOCKS * 3) + "//-1");
+            }
+            if (block % 10 == 0) {
+                generated.line("");
+            }
+            if (block >= issuesFrom && block % 97 == 0) {
+                int issueLine = generated.line(issues[(block / 97) % issues.length]);
+                if (generated.firstIssueLine == 0) {
+                    generated.firstIssueLine = issueLine;
+                }
+            }
+            if (malformedLine != null && block == BLOCKS * 9 / 10) {
+                generated.malformedLine = generated.line(malformedLine);
+            }
+        }
+        return generated;
+    }
+}
@@ -0,0 +1,26 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CameraTest {
+
+    @Test
+    void setFovBumpsVersionOnlyWhenFovChanges() {
+        Camera camera = new Camera(new Vector3f(0, 0, 5), new Vector3f(0, 0, 0), 1.0f, 1.0f, 0.1f, 100f);
+        long version = camera.getVersion();
+
+        camera.setFov(1.0f);
+        assertEquals(version, camera.getVersion());
+
+        camera.setFov(10.0f);
+        assertEquals(3.0f, camera.getFov());
+        assertEquals(version + 1, camera.getVersion());
+
+        // Уже на верхней границе: после ограничения значение то же
+        camera.setFov(20.0f);
+        assertEquals(version + 1, camera.getVersion());
+    }
+}
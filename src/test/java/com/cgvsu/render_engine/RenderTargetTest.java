@@ -0,0 +1,97 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RenderTargetTest {
+
+    @Test
+    void buffersAreAllocatedOnceForAConstantSize() {
+        RenderTarget target = new RenderTarget();
+        Model model = triangleModel();
+        renderFrame(target, model, 320, 240);
+        int[] colorBuffer = target.getColorBuffer();
+        ZBuffer zBuffer = target.getZBuffer();
+
+        for (int i = 0; i < 5; i++) {
+            renderFrame(target, model, 320, 240);
+        }
+
+        assertEquals(1, target.getReallocationCount());
+        assertSame(colorBuffer, target.getColorBuffer());
+        assertSame(zBuffer, target.getZBuffer());
+    }
+
+    @Test
+    void resizeReallocatesOnce() {
+        RenderTarget target = new RenderTarget();
+        Model model = triangleModel();
+        for (int i = 0; i < 3; i++) {
+            renderFrame(target, model, 320, 240);
+        }
+        assertEquals(1, target.getReallocationCount());
+
+        for (int i = 0; i < 3; i++) {
+            renderFrame(target, model, 400, 300);
+        }
+
+        assertEquals(2, target.getReallocationCount());
+        assertEquals(400 * 300, target.getColorBuffer().length);
+    }
+
+    @Test
+    void resizeReportsWhetherBuffersChanged() {
+        RenderTarget target = new RenderTarget();
+        assertTrue(target.resize(64, 64));
+        assertFalse(target.resize(64, 64));
+        assertTrue(target.resize(65, 64));
+        assertEquals(2, target.getReallocationCount());
+    }
+
+    @Test
+    void frameScratchIsReusedBetweenFrames() {
+        RenderTarget target = new RenderTarget();
+        Model model = triangleModel();
+        renderFrame(target, model, 320, 240);
+        int[] visibleClusters = target.acquireVisibleClusters(1);
+        long[] clusterKeys = target.acquireClusterKeys(1);
+        int[] clusterOrder = target.acquireClusterOrder(1);
+        int[] triangleBounds = target.acquireTriangleBounds(1);
+
+        renderFrame(target, model, 320, 240);
+
+        assertSame(visibleClusters, target.acquireVisibleClusters(1));
+        assertSame(clusterKeys, target.acquireClusterKeys(1));
+        assertSame(clusterOrder, target.acquireClusterOrder(1));
+        assertSame(triangleBounds, target.acquireTriangleBounds(1));
+        // Треугольники кадра не удерживаются после его окончания
+        assertTrue(target.acquireScreenTriangles().isEmpty());
+    }
+
+    private static void renderFrame(RenderTarget target, Model model, int width, int height) {
+        Camera camera = new Camera(new Vector3f(0, 0, 5), new Vector3f(0, 0, 0),
+                1.0f, (float) width / height, 0.1f, 100f);
+        RenderEngine.renderFrame(target, new FrameRequest(camera, model, null, width, height,
+                false, false, false, RenderSettings.DEFAULT));
+    }
+
+    private static Model triangleModel() {
+        Model model = new Model();
+        model.addVertex(new Vector3f(-1, -1, 0));
+        model.addVertex(new Vector3f(1, -1, 0));
+        model.addVertex(new Vector3f(0, 1, 0));
+        Polygon polygon = new Polygon();
+        polygon.setVertexIndices(List.of(0, 1, 2));
+        model.addPolygon(polygon);
+        return model;
+    }
+}
@@ -0,0 +1,135 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+// Кадр не должен зависеть от числа потоков растеризации: буферы цвета сравниваются побитно
+class TileRasterizerParityTest {
+    // Размер не кратен тайлу, чтобы крайние тайлы были неполными
+    private static final int WIDTH = 301;
+    private static final int HEIGHT = 203;
+    private static final int[] WORKER_COUNTS = {2, 3, 8};
+
+    private final int initialWorkerCount = RenderEngine.getWorkerCount();
+
+    @AfterEach
+    void restoreWorkerCount() {
+        RenderEngine.setWorkerCount(initialWorkerCount);
+    }
+
+    @Test
+    void trianglesStraddlingTileEdgesMatchSingleThreaded() {
+        assertParity(straddlingModel());
+    }
+
+    @Test
+    void exactDepthTiesMatchSingleThreaded() {
+        assertParity(depthTieModel());
+    }
+
+    private static void assertParity(Model model) {
+        Camera camera = new Camera(new Vector3f(0, 0, 30), new Vector3f(0, 0, 0),
+                1.0f, (float) WIDTH / HEIGHT, 0.1f, 100f);
+        RenderSettings[] variants = {
+                RenderSettings.DEFAULT,
+                RenderSettings.DEFAULT.withShadingMode(ShadingMode.DEFERRED),
+                RenderSettings.DEFAULT.withDepthPrePass(true),
+                RenderSettings.DEFAULT.withCullMode(CullMode.BACK)
+        };
+        for (RenderSettings settings : variants) {
+            for (boolean wireframe : new boolean[]{false, true}) {
+                FrameRequest request = new FrameRequest(camera, model, null, WIDTH, HEIGHT,
+                        wireframe, false, true, settings);
+                int[] expected = render(1, request);
+                assertNotEquals(0, countCovered(expected), "frame must not be empty");
+                for (int workers : WORKER_COUNTS) {
+                    assertArrayEquals(expected, render(workers, request),
+                            settings.getShadingMode() + ", cull=" + settings.getCullMode()
+                                    + ", prePass=" + settings.isDepthPrePass()
+                                    + ", wireframe=" + wireframe + ", workers=" + workers);
+                }
+            }
+        }
+    }
+
+    private static int[] render(int workers, FrameRequest request) {
+        RenderEngine.setWorkerCount(workers);
+        RenderTarget target = new RenderTarget();
+        RenderEngine.renderFrame(target, request);
+        return target.getColorBuffer().clone();
+    }
+
+    private static int countCovered(int[] colors) {
+        int count = 0;
+        for (int color : colors) {
+            if (color != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Длинные тонкие и крупные случайные треугольники: почти каждый пересекает границы тайлов
+    private static Model straddlingModel() {
+        Model model = new Model();
+        Random random = new Random(7);
+        for (int i = 0; i < 400; i++) {
+            float x = random.nextFloat() * 24 - 12;
+            float y = random.nextFloat() * 16 - 8;
+            float z = random.nextFloat() * 10 - 5;
+            float dx = random.nextFloat() * 12 - 6;
+            float dy = random.nextFloat() * 12 - 6;
+            float thickness = i % 2 == 0 ? 0.05f : random.nextFloat() * 3;
+            addTriangle(model,
+                    new Vector3f(x, y, z),
+                    new Vector3f(x + dx, y + dy, z + random.nextFloat() - 0.5f),
+                    new Vector3f(x + thickness, y + dy * 0.5f + thickness, z),
+                    new Vector3f(random.nextFloat(), random.nextFloat(), 1));
+        }
+        return model;
+    }
+
+    // Совпадающие треугольники и треугольники в одной плоскости z = const:
+    // на пересечении глубина одинакова побитно, победитель определяется только номером треугольника
+    private static Model depthTieModel() {
+        Model model = new Model();
+        Random random = new Random(11);
+        for (int layer = 0; layer < 3; layer++) {
+            float z = layer * 2.0f - 2.0f;
+            for (int i = 0; i < 60; i++) {
+                float x = random.nextFloat() * 20 - 10;
+                float y = random.nextFloat() * 14 - 7;
+                float size = 1 + random.nextFloat() * 6;
+                Vector3f a = new Vector3f(x, y, z);
+                Vector3f b = new Vector3f(x + size, y, z);
+                Vector3f c = new Vector3f(x, y + size, z);
+                addTriangle(model, a, b, c, new Vector3f(random.nextFloat(), random.nextFloat(), 1));
+                // Точная копия с другой нормалью - другой цвет при той же глубине
+                addTriangle(model, a, b, c, new Vector3f(1, random.nextFloat(), random.nextFloat()));
+            }
+        }
+        return model;
+    }
+
+    private static void addTriangle(Model model, Vector3f a, Vector3f b, Vector3f c, Vector3f normal) {
+        int base = model.getVertexCount();
+        model.addVertex(a);
+        model.addVertex(b);
+        model.addVertex(c);
+        model.addNormal(normal);
+        int n = model.getNormalCount() - 1;
+        Polygon polygon = new Polygon();
+        polygon.setVertexIndices(List.of(base, base + 1, base + 2));
+        polygon.setNormalIndices(List.of(n, n, n));
+        model.addPolygon(polygon);
+    }
+}